@@ -0,0 +1,25 @@
+package nl.han.ica.icss.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Start de JMH-benchmarks met de GC-profiler standaard aan, zodat naast throughput en
+ * latency-percentielen ook de allocatie per operatie (gc.alloc.rate.norm) gerapporteerd wordt.
+ * De {@link OutputSizeProfiler} voegt bij de generate-benchmarks de grootte van de uitvoer toe.
+ * Alle gewone JMH-opties werken ook, bijv. "java -jar benchmarks.jar parse -p input=large".
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .addProfiler(OutputSizeProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,87 @@
+package nl.han.ica.icss.benchmark;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.transforms.Evaluator;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meet het herhaald uitrekenen van dezelfde gecheckte expressies.
+ * - interpreted: de Evaluator loopt elke keer door de expressieboom
+ * - compiled: de Evaluator gebruikt de op de AST bewaarde CompiledExpressions
+ * De invoer is rekenintensief: 200 variabelen, 2.000 stylerules met 8 declaraties en
+ * operaties van lengte 12. Per aanroep worden alle declaratie-expressies één keer uitgerekend.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExpressionBenchmark {
+
+    private List<Expression> expressions;
+    private Literal[][] frames;
+    private Evaluator interpreter;
+    private Evaluator compiler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(new WorkloadGenerator(42).variables(200).stylerules(2_000)
+                .declarationsPerRule(8).operationLength(12).generate());
+        if (!pipeline.check()) {
+            throw new IllegalStateException(String.join("\n", pipeline.getErrors()));
+        }
+        interpreter = new Evaluator();
+        compiler = new Evaluator();
+        compiler.setCompileExpressions(true);
+
+        // Globale variabelen één keer uitrekenen; daarna alle declaratie-expressies verzamelen
+        ASTNode sheet = pipeline.getAST().root;
+        frames = new Literal[][]{new Literal[sheet.getChildCount()]};
+        expressions = new ArrayList<>();
+        for (int i = 0; i < sheet.getChildCount(); i++) {
+            ASTNode child = sheet.getChild(i);
+            if (child instanceof VariableAssignment) {
+                VariableAssignment assignment = (VariableAssignment) child;
+                frames[0][assignment.name.slot] = interpreter.evaluate(assignment.expression, frames);
+            } else {
+                collect(child, expressions);
+            }
+        }
+        // Compileren hoort bij de setup; de benchmark meet alleen het herhaald uitrekenen
+        for (Expression expression : expressions) {
+            compiler.evaluate(expression, frames);
+        }
+    }
+
+    private static void collect(ASTNode node, List<Expression> out) {
+        if (node instanceof Declaration) {
+            out.add(((Declaration) node).expression);
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collect(node.getChild(i), out);
+        }
+    }
+
+    @Benchmark
+    public void interpreted(Blackhole blackhole) {
+        for (int i = 0; i < expressions.size(); i++) {
+            blackhole.consume(interpreter.evaluate(expressions.get(i), frames));
+        }
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) {
+        for (int i = 0; i < expressions.size(); i++) {
+            blackhole.consume(compiler.evaluate(expressions.get(i), frames));
+        }
+    }
+}
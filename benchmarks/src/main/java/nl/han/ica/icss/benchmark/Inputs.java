@@ -0,0 +1,35 @@
+package nl.han.ica.icss.benchmark;
+
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Levert de ICSS-invoer voor de benchmarks.
+ * - "levelN.icss": de voorbeeldbestanden die als resource in de icsstool-jar zitten
+ * - "large": een gegenereerde stylesheet met 200 variabelen en 10.000 stylerules (vaste seed)
+ */
+public final class Inputs {
+
+    public static final String LARGE = "large";
+
+    private Inputs() { }
+
+    public static String load(String name) throws IOException {
+        if (LARGE.equals(name)) {
+            return new WorkloadGenerator(42).variables(200).stylerules(10_000).generate();
+        }
+        return resource(name);
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = Inputs.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Resource niet gevonden: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package nl.han.ica.icss.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Rapporteert de grootte van de gegenereerde CSS als extra resultaat "·outputBytes" (UTF-8-bytes per operatie).
+ * - Een benchmark geeft zijn uitvoer door met {@link #record(String)}; dat bewaart alleen de referentie,
+ *   het tellen van de bytes gebeurt na de iteratie en telt dus niet mee in de gemeten tijd.
+ * - Anders dan een JMH AuxCounter wordt de waarde over iteraties gemiddeld in plaats van opgeteld.
+ * - Benchmarks die niets doorgeven, krijgen geen extra resultaat.
+ */
+public class OutputSizeProfiler implements InternalProfiler {
+
+    private static volatile String output;
+
+    public static void record(String css) {
+        output = css;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Grootte van de gegenereerde CSS";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        output = null;
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                       IterationResult result) {
+        String css = output;
+        if (css == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new ScalarResult("outputBytes",
+                css.getBytes(StandardCharsets.UTF_8).length, "bytes", AggregationPolicy.AVG));
+    }
+}
@@ -0,0 +1,169 @@
+package nl.han.ica.icss.benchmark;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meet elke stap van de {@link Pipeline} los en de volledige keten.
+ * - parse: Pipeline.parseString (SLL met terugval op LL, de standaard)
+ * - parseFullLL: Pipeline.parseString met alleen volledige LL-predictie, ter vergelijking
+ * - check: Checker op een reeds geparste AST (check verandert een geldige AST niet)
+ * - checkParallel: idem, met de stylerules verdeeld over de common fork-join pool (Pipeline.setParallel)
+ * - transform: Evaluator op een gecheckte AST (transform laat de gecheckte AST heel, dus één keer checken)
+ * - transformParallel: idem, met de stylerules verdeeld over de common fork-join pool
+ * - generate: Generator op een getransformeerde AST
+ * - generateParallel: idem, in stukken gerenderd op de common fork-join pool en in bronvolgorde aan elkaar gezet
+ * - generateStreaming: idem, maar direct naar een Writer zonder string van het hele document
+ * - generateMinified: idem, zonder overbodige witruimte (Pipeline.setMinify)
+ *   generate en generateMinified rapporteren ook de grootte van de uitvoer (·outputBytes, zie OutputSizeProfiler)
+ * - compile: parse → check → transform → generate
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Source {
+        @Param({"level0.icss", "level1.icss", "level2.icss", "level3.icss", "level4.icss", Inputs.LARGE})
+        public String input;
+
+        public String text;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            text = Inputs.load(input);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Parsed {
+        public Pipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void parse(Source source) {
+            pipeline = new Pipeline();
+            pipeline.parseString(source.text);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Checked {
+        public Pipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void check(Source source) {
+            pipeline = new Pipeline();
+            pipeline.parseString(source.text);
+            pipeline.check();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Transformed {
+        public Pipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void transform(Source source) {
+            pipeline = new Pipeline();
+            pipeline.parseString(source.text);
+            pipeline.check();
+            pipeline.transform();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Minified {
+        public Pipeline pipeline;
+
+        @Setup(Level.Trial)
+        public void transform(Source source) {
+            pipeline = new Pipeline();
+            pipeline.setMinify(true);
+            pipeline.parseString(source.text);
+            pipeline.check();
+            pipeline.transform();
+        }
+    }
+
+    @Benchmark
+    public AST parse(Source source) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(source.text);
+        return pipeline.getAST();
+    }
+
+    @Benchmark
+    public AST parseFullLL(Source source) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.setTwoStageParsing(false);
+        pipeline.parseString(source.text);
+        return pipeline.getAST();
+    }
+
+    @Benchmark
+    public boolean check(Parsed parsed) {
+        return parsed.pipeline.check();
+    }
+
+    @Benchmark
+    public boolean checkParallel(Parsed parsed) {
+        parsed.pipeline.setParallel(true);
+        return parsed.pipeline.check();
+    }
+
+    @Benchmark
+    public AST transform(Checked checked) {
+        checked.pipeline.transform();
+        return checked.pipeline.getAST();
+    }
+
+    @Benchmark
+    public AST transformParallel(Checked checked) {
+        checked.pipeline.setParallel(true);
+        checked.pipeline.transform();
+        return checked.pipeline.getAST();
+    }
+
+    @Benchmark
+    public String generate(Transformed transformed) {
+        String css = transformed.pipeline.generate();
+        OutputSizeProfiler.record(css);
+        return css;
+    }
+
+    @Benchmark
+    public String generateParallel(Transformed transformed) {
+        transformed.pipeline.setParallel(true);
+        return transformed.pipeline.generate();
+    }
+
+    @Benchmark
+    public String generateMinified(Minified minified) {
+        String css = minified.pipeline.generate();
+        OutputSizeProfiler.record(css);
+        return css;
+    }
+
+    @Benchmark
+    public void generateStreaming(Transformed transformed) throws IOException {
+        transformed.pipeline.generate(new BufferedWriter(Writer.nullWriter()));
+    }
+
+    @Benchmark
+    public String compile(Source source) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(source.text);
+        pipeline.check();
+        pipeline.transform();
+        return pipeline.generate();
+    }
+}
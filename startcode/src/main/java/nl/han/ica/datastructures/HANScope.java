@@ -0,0 +1,137 @@
+package nl.han.ica.datastructures;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Parent-linked scope chain for variables.
+ * Entering a block creates an empty child scope that points to its parent, so nothing is copied.
+ * Assignments always go into the current scope and never leak to the parent;
+ * lookups walk from the current scope up to the outermost one, so inner assignments shadow outer ones.
+ * Every name gets a fixed slot in the scope that defines it, so (depth, slot) addresses a variable
+ * without its name; see {@link #depth()} and {@link #slotOf(String)}.
+ */
+public class HANScope<T> {
+    private final HANScope<T> parent;
+    private final int depth;
+    // Only allocated on the first assignment; most block scopes never get one
+    private HashMap<String, Integer> slots;
+    private ArrayList<T> values;
+
+    public HANScope() {
+        this(null);
+    }
+
+    private HANScope(HANScope<T> parent) {
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+    }
+
+    /**
+     * Creates a child scope of this scope
+     * @return the new (empty) child scope
+     */
+    public HANScope<T> enter() {
+        return new HANScope<>(this);
+    }
+
+    /**
+     * Copies the variables of this scope; the copy has the same parent.
+     * Later assignments to this scope do not show up in the copy, so it can serve as a snapshot
+     * @return the copy
+     */
+    public HANScope<T> copy() {
+        HANScope<T> copy = new HANScope<>(parent);
+        if (slots != null) {
+            copy.slots = new HashMap<>(slots);
+            copy.values = new ArrayList<>(values);
+        }
+        return copy;
+    }
+
+    /**
+     * Leaves this scope. Everything assigned in it is gone afterwards
+     * @return the parent scope
+     */
+    public HANScope<T> exit() {
+        if (parent == null) {
+            throw new RuntimeException("Scope has no parent");
+        }
+        return parent;
+    }
+
+    /**
+     * Assigns value T to name in this scope. Assigning the same name again reuses its slot
+     * @param name variable name
+     * @param value value to assign
+     * @return slot of name in this scope
+     */
+    public int put(String name, T value) {
+        if (slots == null) {
+            slots = new HashMap<>();
+            values = new ArrayList<>();
+        }
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slots.put(name, values.size());
+            values.add(value);
+            return values.size() - 1;
+        }
+        values.set(slot, value);
+        return slot;
+    }
+
+    /**
+     * Looks up name in this scope and then in its parents
+     * @param name variable name
+     * @return the innermost value for name, or null when it is not defined
+     */
+    public T get(String name) {
+        HANScope<T> scope = lookupScope(name);
+        return scope == null ? null : scope.valueAt(scope.slotOf(name));
+    }
+
+    /**
+     * Finds the innermost scope (this one or a parent) that defines name
+     * @param name variable name
+     * @return the defining scope, or null when it is not defined
+     */
+    public HANScope<T> lookupScope(String name) {
+        for (HANScope<T> scope = this; scope != null; scope = scope.parent) {
+            if (scope.slots != null && scope.slots.containsKey(name)) {
+                return scope;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Slot of name in this scope only
+     * @param name variable name
+     * @return slot, or -1 when name is not defined in this scope
+     */
+    public int slotOf(String name) {
+        if (slots == null) {
+            return -1;
+        }
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Value in a slot of this scope
+     * @param slot slot as returned by {@link #put(String, Object)} or {@link #slotOf(String)}
+     * @return value in that slot
+     */
+    public T valueAt(int slot) {
+        return values.get(slot);
+    }
+
+    /**
+     * Number of parents above this scope
+     * @return depth, 0 for the outermost scope
+     */
+    public int depth() {
+        return depth;
+    }
+}
@@ -1,48 +1,62 @@
 package nl.han.ica.datastructures;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
+/**
+ * Array-backed stack. Tree walkers use it instead of recursion, so push and pop
+ * are kept as cheap as a field access (no bounds checks or modCount as in ArrayList).
+ * @param <T> type of the values; null is allowed
+ */
 public class HANStack<T> {
-    private final List<T> data = new ArrayList<>();
+    private Object[] data = new Object[16];
+    private int size = 0;
 
     /**
      * pushes value T to the top of the stack
      * @param value value to push
      */
     public void push(T value){
-     data.add(value);
+        if (size == data.length) {
+            data = Arrays.copyOf(data, size * 2);
+        }
+        data[size++] = value;
     }
 
     /**
      * Pops (and removes) value at top of stack
      * @return popped value
      */
+    @SuppressWarnings("unchecked")
     public T pop(){
-        if (data.isEmpty()){
+        if (size == 0){
             throw new RuntimeException("Stack is empty");
         }
-        return data.remove(data.size() - 1);
+        T value = (T) data[--size];
+        // No reference left behind, so popped nodes can be garbage collected
+        data[size] = null;
+        return value;
     }
 
     /**
      * Peeks at the top of the stack. Does not remove anything
      * @return value at the top of the stack
      */
+    @SuppressWarnings("unchecked")
     public T peek(){
-        if (data.isEmpty()){
+        if (size == 0){
             throw new RuntimeException("Stack is empty");
         }
-        return data.get(data.size() - 1);
+        return (T) data[size - 1];
     }
 
     public boolean isEmpty(){
-        return data.isEmpty();
+        return size == 0;
     }
     public int size(){
-        return data.size();
+        return size;
     }
     public void clear(){
-        data.clear();
+        Arrays.fill(data, 0, size, null);
+        size = 0;
     }
 }
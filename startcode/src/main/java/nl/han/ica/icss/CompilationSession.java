@@ -0,0 +1,314 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.datastructures.HANScope;
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.transforms.Evaluator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Langlopende compilatie van één stylesheet waarin globale variabelen aangepast kunnen worden
+ * zonder alles opnieuw te checken, uit te rekenen en te genereren.
+ * - Houdt een afhankelijkheidsgraaf bij van elke globale VariableAssignment naar de statements die de
+ *   variabele gebruiken: andere globale assignments, if-condities, declaraties en assignments in stylerules.
+ *   Welke assignment een referentie gebruikt, volgt uit naam en plek: de laatste globale assignment
+ *   met die naam ervóór. Lokale variabelen met dezelfde naam worden niet onderscheiden; dat kost
+ *   hooguit een stylerule te veel, nooit een te weinig.
+ * - Na een wijziging worden via de graaf (transitief) alleen de geraakte globale assignments en stylerules
+ *   opnieuw gecheckt, uitgerekend en gegenereerd; de CSS van alle andere stylerules wordt hergebruikt.
+ *   Een stylerule is de kleinste eenheid, want een andere if-conditie kan de hele body veranderen.
+ * - De globale scope wordt daarvoor in bronvolgorde opnieuw opgebouwd uit de bewaarde types en waardes;
+ *   zo ziet elke stylerule precies de globale variabelen die op zijn plek gelden.
+ * - De AST is van de sessie: hij wordt gecheckt (fouten en bindingen komen op de knopen) en
+ *   gewijzigde expressies worden erin gezet.
+ */
+public class CompilationSession {
+
+    private final List<ASTNode> items;
+    private final Checker checker = new Checker();
+    private final Evaluator evaluator = new Evaluator();
+    private final Generator generator = new Generator();
+
+    // Per statement van de stylesheet: waarde (globale assignment), CSS (stylerule) en fouten
+    private final Literal[] values;
+    private final String[] css;
+    private final List<List<SemanticError>> errors;
+
+    // Afhankelijkheidsgraaf: globale assignment → statements die hem gebruiken
+    private final Map<VariableAssignment, List<ASTNode>> dependents = new IdentityHashMap<>();
+    // Omgekeerd, alleen voor globale assignments: nodig om hun kanten te vervangen na een wijziging
+    private final Map<VariableAssignment, List<VariableAssignment>> dependencies = new IdentityHashMap<>();
+    // Statement (met een afhankelijkheid) → index van de stylerule of globale assignment waar het in staat
+    private final Map<ASTNode, Integer> statementIndex = new IdentityHashMap<>();
+    // Naam → indexen van de globale assignments met die naam, oplopend
+    private final Map<String, List<Integer>> assignmentsByName = new HashMap<>();
+
+    /**
+     * @param parsedAst geparste AST; wordt hier gecheckt, uitgerekend en gegenereerd
+     */
+    public CompilationSession(AST parsedAst) {
+        this.items = parsedAst.root.body;
+        this.values = new Literal[items.size()];
+        this.css = new String[items.size()];
+        this.errors = new ArrayList<>(Collections.nCopies(items.size(), Collections.emptyList()));
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) instanceof VariableAssignment) {
+                String name = ((VariableAssignment) items.get(i)).name.name;
+                assignmentsByName.computeIfAbsent(name, n -> new ArrayList<>()).add(i);
+            }
+        }
+        for (int i = 0; i < items.size(); i++) {
+            addEdges(i, items.get(i), null);
+        }
+        BitSet all = new BitSet(items.size());
+        all.set(0, items.size());
+        rebuild(all);
+    }
+
+    /**
+     * Geeft de (eerste) globale variabele met deze naam een nieuwe expressie.
+     * @return de stylerules die opnieuw zijn uitgerekend, in bronvolgorde
+     */
+    public List<Stylerule> setVariable(String name, Expression expression) {
+        List<Integer> indexes = assignmentsByName.get(name);
+        if (indexes == null) {
+            throw new IllegalArgumentException("Onbekende globale variabele: " + name);
+        }
+        return update((VariableAssignment) items.get(indexes.get(0)), expression);
+    }
+
+    /**
+     * Geeft een globale assignment uit deze stylesheet een nieuwe expressie.
+     * @return de stylerules die opnieuw zijn uitgerekend, in bronvolgorde
+     */
+    public List<Stylerule> update(VariableAssignment assignment, Expression expression) {
+        int index = indexOf(assignment);
+        removeEdges(assignment);
+        assignment.expression = expression;
+        addEdges(index, assignment, null);
+
+        BitSet affected = affectedBy(assignment, index);
+        rebuild(affected);
+
+        List<Stylerule> rules = new ArrayList<>();
+        for (int i = affected.nextSetBit(0); i >= 0; i = affected.nextSetBit(i + 1)) {
+            if (items.get(i) instanceof Stylerule) {
+                rules.add((Stylerule) items.get(i));
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Statements die deze globale assignment direct gebruiken (de graaf, zonder transitieve afhankelijkheden).
+     */
+    public List<ASTNode> getDependents(VariableAssignment assignment) {
+        List<ASTNode> direct = dependents.get(assignment);
+        return direct == null ? Collections.emptyList() : Collections.unmodifiableList(direct);
+    }
+
+    public List<SemanticError> getErrors() {
+        List<SemanticError> all = new ArrayList<>();
+        for (List<SemanticError> itemErrors : errors) {
+            all.addAll(itemErrors);
+        }
+        return all;
+    }
+
+    /**
+     * De CSS van de hele stylesheet; alleen geldig als getErrors() leeg is.
+     */
+    public String getCss() {
+        StringBuilder builder = new StringBuilder();
+        for (String rule : css) {
+            if (rule != null) {
+                builder.append(rule);
+            }
+        }
+        return builder.toString();
+    }
+
+    // Loopt de stylesheet in bronvolgorde door en werkt alleen de statements uit affected opnieuw bij
+    private void rebuild(BitSet affected) {
+        HANScope<ExpressionType> globals = new HANScope<>();
+        Literal[] frame = new Literal[8];
+        for (int i = 0; i < items.size(); i++) {
+            ASTNode item = items.get(i);
+            if (item instanceof VariableAssignment) {
+                VariableAssignment assignment = (VariableAssignment) item;
+                VariableReference name = assignment.name;
+                if (affected.get(i)) {
+                    clearErrors(assignment);
+                    name.type = null;
+                    name.depth = name.slot = VariableReference.UNBOUND;
+                    checker.check(assignment, globals);
+                    // Zoals in de Checker: zonder type krijgt de naam geen slot en blijft een eerdere
+                    // binding met dezelfde naam zichtbaar
+                    values[i] = name.type == null ? null
+                            : evaluator.evaluate(assignment.expression, new Literal[][]{frame});
+                    errors.set(i, collectErrors(assignment));
+                } else if (name.type != null) {
+                    // Opnieuw binden: een eerdere assignment kan van wel naar geen slot (of andersom) zijn gegaan
+                    name.slot = globals.put(name.name, name.type);
+                }
+                if (name.type == null) {
+                    continue;
+                }
+                if (name.slot >= frame.length) {
+                    frame = Arrays.copyOf(frame, Math.max(name.slot + 1, frame.length * 2));
+                }
+                frame[name.slot] = values[i];
+            } else if (affected.get(i)) {
+                clearErrors(item);
+                checker.check(item, globals);
+                List<SemanticError> itemErrors = collectErrors(item);
+                css[i] = "";
+                if (itemErrors.isEmpty()) {
+                    ArrayList<ASTNode> evaluated = new ArrayList<>(evaluator.evaluate(item, frame));
+                    css[i] = generator.generate(new AST(new Stylesheet(evaluated)));
+                    itemErrors = collectErrors(item);
+                }
+                errors.set(i, itemErrors);
+            }
+        }
+    }
+
+    // Het gewijzigde statement plus alles wat er (transitief) van afhangt
+    private BitSet affectedBy(VariableAssignment assignment, int index) {
+        BitSet affected = new BitSet(items.size());
+        affected.set(index);
+        ArrayDeque<VariableAssignment> work = new ArrayDeque<>();
+        work.push(assignment);
+        while (!work.isEmpty()) {
+            for (ASTNode dependent : getDependents(work.pop())) {
+                int dependentIndex = statementIndex.get(dependent);
+                if (items.get(dependentIndex) == dependent && !affected.get(dependentIndex)) {
+                    // Een globale assignment: wat daarvan afhangt, verandert ook
+                    work.push((VariableAssignment) dependent);
+                }
+                affected.set(dependentIndex);
+            }
+        }
+        return affected;
+    }
+
+    // Legt voor elke referentie naar een globale variabele een kant aan vanaf de assignment die op die plek geldt.
+    // Met een expliciete stack (knoop + statement waar hij in staat), zodat diepe nesting geen probleem is.
+    private void addEdges(int index, ASTNode root, ASTNode rootStatement) {
+        HANStack<ASTNode> nodes = new HANStack<>();
+        HANStack<ASTNode> statements = new HANStack<>();
+        nodes.push(root);
+        statements.push(rootStatement);
+        while (!nodes.isEmpty()) {
+            ASTNode node = nodes.pop();
+            ASTNode statement = statements.pop();
+            if (node instanceof VariableAssignment) {
+                // De naam zelf is geen gebruik van de variabele
+                VariableAssignment assignment = (VariableAssignment) node;
+                if (assignment.expression != null) {
+                    nodes.push(assignment.expression);
+                    statements.push(assignment);
+                }
+                continue;
+            }
+            if (node instanceof Declaration || node instanceof IfClause) {
+                statement = node;
+            }
+            if (node instanceof VariableReference && statement != null) {
+                VariableAssignment source = assignmentBefore(((VariableReference) node).name, index);
+                if (source != null) {
+                    addOnce(dependents.computeIfAbsent(source, s -> new ArrayList<>()), statement);
+                    statementIndex.put(statement, index);
+                    if (statement == items.get(index)) {
+                        addOnce(dependencies.computeIfAbsent((VariableAssignment) statement, s -> new ArrayList<>()), source);
+                    }
+                }
+            }
+            // In omgekeerde volgorde, zodat de referenties binnen een statement op volgorde langskomen (addOnce)
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                nodes.push(node.getChild(i));
+                statements.push(statement);
+            }
+        }
+    }
+
+    // Referenties binnen één statement komen na elkaar, dus alleen het laatste element vergelijken
+    private static <T extends ASTNode> void addOnce(List<T> nodes, T node) {
+        if (nodes.isEmpty() || nodes.get(nodes.size() - 1) != node) {
+            nodes.add(node);
+        }
+    }
+
+    private void removeEdges(VariableAssignment assignment) {
+        List<VariableAssignment> sources = dependencies.remove(assignment);
+        if (sources == null) {
+            return;
+        }
+        for (VariableAssignment source : sources) {
+            dependents.get(source).removeIf(dependent -> dependent == assignment);
+        }
+    }
+
+    private VariableAssignment assignmentBefore(String name, int index) {
+        List<Integer> indexes = assignmentsByName.get(name);
+        if (indexes == null) {
+            return null;
+        }
+        int position = Collections.binarySearch(indexes, index);
+        // Niet gevonden: -(invoegpunt) - 1; de assignment ervoor staat op invoegpunt - 1
+        int before = position >= 0 ? position - 1 : -position - 2;
+        return before < 0 ? null : (VariableAssignment) items.get(indexes.get(before));
+    }
+
+    private int indexOf(VariableAssignment assignment) {
+        List<Integer> indexes = assignmentsByName.get(assignment.name.name);
+        if (indexes != null) {
+            for (int index : indexes) {
+                if (items.get(index) == assignment) {
+                    return index;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Geen globale variabele-assignment uit deze stylesheet: " + assignment.name.name);
+    }
+
+    private static void clearErrors(ASTNode root) {
+        HANStack<ASTNode> work = new HANStack<>();
+        work.push(root);
+        while (!work.isEmpty()) {
+            ASTNode node = work.pop();
+            node.clearError();
+            for (int i = 0; i < node.getChildCount(); i++) {
+                work.push(node.getChild(i));
+            }
+        }
+    }
+
+    // Op boomvolgorde, zoals AST.getErrors()
+    private static List<SemanticError> collectErrors(ASTNode root) {
+        List<SemanticError> found = new ArrayList<>();
+        HANStack<ASTNode> work = new HANStack<>();
+        work.push(root);
+        while (!work.isEmpty()) {
+            ASTNode node = work.pop();
+            node.collectErrors(found);
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                work.push(node.getChild(i));
+            }
+        }
+        return found.isEmpty() ? Collections.emptyList() : found;
+    }
+}
@@ -4,17 +4,15 @@ import nl.han.ica.icss.ast.AST;
 import nl.han.ica.icss.checker.Checker;
 import nl.han.ica.icss.checker.SemanticError;
 import nl.han.ica.icss.generator.Generator;
-import nl.han.ica.icss.parser.ASTListener;
-import nl.han.ica.icss.parser.ICSSLexer;
-import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.parser.ReusableParser;
 import nl.han.ica.icss.transforms.Evaluator;
+import nl.han.ica.icss.transforms.Optimizer;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
@@ -22,10 +20,19 @@ import java.util.List;
 public class Pipeline implements ANTLRErrorListener {
 
     private AST ast;
+    //The parsed (and checked) tree; transform() leaves it untouched so it can be reused
+    private AST source;
     private boolean parsed = false;
     private boolean checked = false;
     private boolean transformed = false;
     private List<String> errors;
+    private boolean twoStageParsing = true;
+    private boolean buildParseTree = false;
+    private boolean minify = false;
+    private boolean optimize = false;
+    private boolean parallel = false;
+    private boolean collectStats = false;
+    private PipelineStats stats;
 
     public Pipeline() {
         errors = new ArrayList<>();
@@ -34,6 +41,9 @@ public class Pipeline implements ANTLRErrorListener {
     public AST getAST() {
         return ast;
     }
+    public AST getSourceAST() {
+        return source;
+    }
     public List<String> getErrors() {
         return errors;
     }
@@ -46,31 +56,75 @@ public class Pipeline implements ANTLRErrorListener {
     public boolean isTransformed() {
         return transformed;
     }
+    public boolean isTwoStageParsing() {
+        return twoStageParsing;
+    }
+    //When disabled every parse uses full LL prediction directly
+    public void setTwoStageParsing(boolean twoStageParsing) {
+        this.twoStageParsing = twoStageParsing;
+    }
+    public boolean isBuildParseTree() {
+        return buildParseTree;
+    }
+    //When enabled the full Antlr parse tree is built first and walked afterwards;
+    //by default the AST is built by the listener while parsing
+    public void setBuildParseTree(boolean buildParseTree) {
+        this.buildParseTree = buildParseTree;
+    }
+    public boolean isMinify() {
+        return minify;
+    }
+    //When enabled generate() writes CSS without insignificant whitespace (see Generator)
+    public void setMinify(boolean minify) {
+        this.minify = minify;
+    }
+    public boolean isOptimize() {
+        return optimize;
+    }
+    //When enabled transform() also runs the Optimizer: overridden declarations are removed
+    //and rules with identical bodies are merged
+    public void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+    public boolean isParallel() {
+        return parallel;
+    }
+    //When enabled check(), transform() and generate() handle the stylerules concurrently on the common fork-join pool;
+    //generate(Appendable) keeps streaming: it renders a bounded window of chunks ahead of the output (see Generator),
+    //generate() builds the whole document in memory either way
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+    public boolean isCollectStats() {
+        return collectStats;
+    }
+    //When enabled every run (from parseString on) records wall and CPU time per stage and some counts,
+    //see getStats(). The parser takes the same path as without stats; only the lexer is timed per token,
+    //so lexing shows up as the time spent inside the lexer during the parse
+    public void setCollectStats(boolean collectStats) {
+        this.collectStats = collectStats;
+    }
+    //Statistics of the current run, or null when stats are not collected
+    public PipelineStats getStats() {
+        return stats;
+    }
+    //Number of parses that succeeded on the SLL fast path
+    public static long getSllParseCount() {
+        return ReusableParser.getSllParseCount();
+    }
+    //Number of parses that had to fall back to full LL
+    public static long getLlFallbackCount() {
+        return ReusableParser.getLlFallbackCount();
+    }
 
     public void parseString(String input) {
 
-        //Lex (with Antlr's generated lexer)
-        CharStream inputStream = CharStreams.fromString(input);
-        ICSSLexer lexer = new ICSSLexer(inputStream);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(this);
+        //Lex and parse (with Antlr's generated lexer and parser, reused per thread)
+        //and build the AST with the ASTListener
         errors.clear();
+        stats = collectStats ? new PipelineStats() : null;
         try {
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
-
-            //Parse (with Antlr's generated parser)
-            ICSSParser parser = new ICSSParser(tokens);
-            parser.removeErrorListeners();
-            parser.addErrorListener(this);
-
-            ParseTree parseTree = parser.stylesheet();
-
-            //Extract AST from the Antlr parse tree
-            ASTListener listener = new ASTListener();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(listener, parseTree);
-
-            this.ast = listener.getAST();
+            this.ast = ReusableParser.forCurrentThread().parse(input, this, twoStageParsing, buildParseTree, stats);
 
         } catch (RecognitionException e) {
             this.ast = new AST();
@@ -80,14 +134,26 @@ public class Pipeline implements ANTLRErrorListener {
             this.ast = new AST();
             errors.add("Syntax error");
         }
+        source = ast;
         parsed = errors.isEmpty();
         checked = transformed = false;
+        if (stats != null) {
+            stats.countNodes(ast);
+            stats.setErrors(errors.size());
+            stats.commitCounts(PipelineStats.Stage.BUILD_AST);
+        }
     }
+
     public boolean check() {
-            if(ast == null)
+            if(source == null)
                 return false;
 
-           (new Checker()).check(this.ast);
+           //Checking (again) always starts from the untransformed tree
+           this.ast = source;
+           PipelineStats.Timing timing = start(PipelineStats.Stage.CHECK);
+           Checker checker = new Checker();
+           checker.setParallel(parallel);
+           checker.check(this.ast);
 
             ArrayList<SemanticError> errors = this.ast.getErrors();
             if (!errors.isEmpty()) {
@@ -95,6 +161,11 @@ public class Pipeline implements ANTLRErrorListener {
                     this.errors.add(e.toString());
                 }
             }
+            if (timing != null) {
+                timing.end();
+                stats.setErrors(this.errors.size());
+                stats.commitCounts(PipelineStats.Stage.CHECK);
+            }
 
             checked = errors.isEmpty();
             transformed = false;
@@ -106,17 +177,48 @@ public class Pipeline implements ANTLRErrorListener {
     }
 
     public void transform() {
-        if(ast == null)
+        if(source == null)
             return;
 
-        (new Evaluator()).apply(ast);
-
+        //The Evaluator builds a new tree and shares unchanged parts with the source,
+        //so transform() can run again on the same checked tree
+        PipelineStats.Timing timing = start(PipelineStats.Stage.TRANSFORM);
+        Evaluator evaluator = new Evaluator();
+        evaluator.setParallel(parallel);
+        ast = evaluator.transform(source);
+        if (optimize) {
+            ast = (new Optimizer()).transform(ast);
+        }
+        end(timing);
 
         transformed = errors.isEmpty();
     }
     public String generate() {
+        PipelineStats.Timing timing = start(PipelineStats.Stage.GENERATE);
+        Generator generator = new Generator();
+        generator.setMinify(minify);
+        generator.setParallel(parallel);
+        String css = generator.generate(ast);
+        end(timing);
+        return css;
+    }
+    //Streams the CSS into the given Writer/Appendable without building the whole document in memory
+    public void generate(Appendable out) throws IOException {
+        PipelineStats.Timing timing = start(PipelineStats.Stage.GENERATE);
         Generator generator = new Generator();
-        return generator.generate(ast);
+        generator.setMinify(minify);
+        generator.setParallel(parallel);
+        generator.generate(ast, out);
+        end(timing);
+    }
+
+    //null when stats are not collected
+    private PipelineStats.Timing start(PipelineStats.Stage stage) {
+        return stats == null ? null : stats.start(stage);
+    }
+    private static void end(PipelineStats.Timing timing) {
+        if (timing != null)
+            timing.end();
     }
 
     //Catch ANTLR errors
@@ -0,0 +1,40 @@
+package nl.han.ica.icss;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-event met de tellingen van een run van de {@link Pipeline}, na parse en na check.
+ */
+@Name("nl.han.ica.icss.PipelineCounts")
+@Label("ICSS Pipeline Counts")
+@Category({"ICSS", "Pipeline"})
+@Description("Tokens, AST nodes, variables, stylerules and errors of an ICSS compilation")
+@StackTrace(false)
+class PipelineCountsEvent extends Event {
+
+    @Label("After Stage")
+    String stage;
+
+    @Label("Tokens")
+    int tokens;
+
+    @Label("AST Nodes")
+    int nodes;
+
+    @Label("Variables")
+    int variables;
+
+    @Label("Stylerules")
+    int rules;
+
+    @Label("Errors")
+    int errors;
+
+    @Label("Parse Path")
+    String parsePath;
+}
@@ -0,0 +1,165 @@
+package nl.han.ica.icss;
+
+import java.util.Arrays;
+
+/**
+ * Voegt de {@link PipelineStats} van veel runs samen tot histogrammen, bijv. over alle bestanden van een batch.
+ * - Per stap een histogram van de wandkloktijd en van de CPU-tijd (nanoseconden), plus histogrammen van
+ *   het aantal tokens, AST-knopen en fouten per run.
+ * - add is thread-safe, zodat worker-threads hun runs direct kunnen toevoegen.
+ */
+public class PipelineHistograms {
+
+    private final Histogram[] wall = new Histogram[PipelineStats.Stage.values().length];
+    private final Histogram[] cpu = new Histogram[PipelineStats.Stage.values().length];
+    private final Histogram tokens = new Histogram();
+    private final Histogram nodes = new Histogram();
+    private final Histogram errors = new Histogram();
+
+    public PipelineHistograms() {
+        for (int i = 0; i < wall.length; i++) {
+            wall[i] = new Histogram();
+            cpu[i] = new Histogram();
+        }
+    }
+
+    public synchronized void add(PipelineStats stats) {
+        for (PipelineStats.Stage stage : PipelineStats.Stage.values()) {
+            wall[stage.ordinal()].record(stats.getWallNanos(stage));
+            cpu[stage.ordinal()].record(stats.getCpuNanos(stage));
+        }
+        tokens.record(stats.getTokens());
+        nodes.record(stats.getNodes());
+        errors.record(stats.getErrors());
+    }
+
+    public synchronized long getRuns() {
+        return tokens.getCount();
+    }
+
+    // De getters geven een kopie, die verandert niet meer door latere add-aanroepen
+
+    public synchronized Histogram getWallNanos(PipelineStats.Stage stage) {
+        return wall[stage.ordinal()].copy();
+    }
+
+    public synchronized Histogram getCpuNanos(PipelineStats.Stage stage) {
+        return cpu[stage.ordinal()].copy();
+    }
+
+    public synchronized Histogram getTokens() {
+        return tokens.copy();
+    }
+
+    public synchronized Histogram getNodes() {
+        return nodes.copy();
+    }
+
+    public synchronized Histogram getErrors() {
+        return errors.copy();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%d run(s); tijden in ms (wall/cpu), percentielen tot op een factor 2%n", getRuns()));
+        builder.append(String.format("%-10s %17s %17s %17s %17s%n", "stap", "gemiddeld", "p50", "p99", "max"));
+        for (PipelineStats.Stage stage : PipelineStats.Stage.values()) {
+            Histogram w = wall[stage.ordinal()];
+            Histogram c = cpu[stage.ordinal()];
+            builder.append(String.format("%-10s %8.2f/%-8.2f %8.2f/%-8.2f %8.2f/%-8.2f %8.2f/%-8.2f%n", stage,
+                    w.getMean() / 1e6, c.getMean() / 1e6,
+                    w.getPercentile(50) / 1e6, c.getPercentile(50) / 1e6,
+                    w.getPercentile(99) / 1e6, c.getPercentile(99) / 1e6,
+                    w.getMax() / 1e6, c.getMax() / 1e6));
+        }
+        builder.append(String.format("tokens gemiddeld %.0f (max %d), knopen gemiddeld %.0f (max %d), fouten in totaal %d%n",
+                tokens.getMean(), tokens.getMax(), nodes.getMean(), nodes.getMax(), errors.getSum()));
+        return builder.toString();
+    }
+
+    /**
+     * Histogram met een bucket per macht van twee: waarde v (≥ 1) valt in bucket 64 - numberOfLeadingZeros(v),
+     * 0 in bucket 0. Vaste grootte en geen allocatie per waarde; percentielen zijn daardoor tot op een
+     * factor 2 nauwkeurig, aantal, som, minimum en maximum zijn exact.
+     */
+    public static final class Histogram {
+        private final long[] buckets = new long[65];
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max;
+
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            buckets[64 - Long.numberOfLeadingZeros(value)]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMin() {
+            return count == 0 ? 0 : min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Bovengrens van de bucket waarin het gegeven percentiel valt, nooit meer dan het maximum.
+         * @param percentile tussen 0 en 100
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int bucket = 0; bucket < buckets.length; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= Math.max(1, rank)) {
+                    long upper = bucket == 0 ? 0 : bucket == 64 ? Long.MAX_VALUE : (1L << bucket) - 1;
+                    return Math.min(upper, max);
+                }
+            }
+            return max;
+        }
+
+        // Aantallen per bucket; index i bevat de waardes van 2^(i-1) tot en met 2^i - 1
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+
+        private Histogram copy() {
+            Histogram copy = new Histogram();
+            System.arraycopy(buckets, 0, copy.buckets, 0, buckets.length);
+            copy.count = count;
+            copy.sum = sum;
+            copy.min = min;
+            copy.max = max;
+            return copy;
+        }
+
+        @Override
+        public String toString() {
+            return "Histogram{count=" + count + ", min=" + getMin() + ", max=" + max + ", mean=" + getMean()
+                    + ", buckets=" + Arrays.toString(buckets) + "}";
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package nl.han.ica.icss;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR-event voor één stap van de {@link Pipeline}; de duur van het event is de wandkloktijd van de stap.
+ * Lexen loopt tijdens het parsen en heeft geen eigen event: het PARSE-event heeft de tijd in de lexer als
+ * lexTime en lexCpuTime (die de duur en cpuTime al omvatten).
+ * Alleen als de Pipeline statistieken verzamelt (setCollectStats) en er een opname loopt.
+ */
+@Name("nl.han.ica.icss.PipelineStage")
+@Label("ICSS Pipeline Stage")
+@Category({"ICSS", "Pipeline"})
+@Description("Wall and CPU time of one stage of an ICSS compilation")
+@StackTrace(false)
+class PipelineStageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("CPU Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long cpuTime;
+
+    @Label("Lexer Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long lexTime;
+
+    @Label("Lexer CPU Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long lexCpuTime;
+}
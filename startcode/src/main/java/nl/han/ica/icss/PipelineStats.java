@@ -0,0 +1,228 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Meetwaardes van één run van de {@link Pipeline} (vanaf parseString), zie Pipeline.setCollectStats.
+ * - Per stap de wandkloktijd en de CPU-tijd van de aanroepende thread, in nanoseconden. Met
+ *   Pipeline.setParallel(true) telt het werk op de fork-join pool niet mee in de CPU-tijd.
+ * - Een stap die vaker loopt (check na een wijziging, een tweede generate) telt op; een stap die niet
+ *   gelopen heeft staat op 0.
+ * - Lexen en parsen lopen door elkaar, net als zonder stats: LEX is de tijd in de lexer tijdens de parse,
+ *   PARSE de rest van de parse (inclusief het bouwen van de AST als dat tijdens het parsen gebeurt) en
+ *   BUILD_AST alleen het aflopen van een parse tree. Ook de CPU-tijd van LEX wordt per token in de lexer
+ *   gemeten; PARSE krijgt de rest. Welk pad de parser nam staat in getParsePath().
+ * - Tellingen: tokens (zonder EOF), AST-knopen per type (klassenaam), variabele-assignments, stylerules
+ *   en fouten tot nu toe.
+ * - Elke stap wordt ook als JFR-event gepubliceerd (PipelineStageEvent), de tellingen na parse en check
+ *   als PipelineCountsEvent.
+ * Over meerdere runs samenvoegen gaat met {@link PipelineHistograms}.
+ */
+public class PipelineStats {
+
+    public enum Stage {
+        LEX, PARSE, BUILD_AST, CHECK, TRANSFORM, GENERATE
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private final long[] wallNanos = new long[Stage.values().length];
+    private final long[] cpuNanos = new long[Stage.values().length];
+    private int tokens;
+    private final Map<String, Integer> nodesByType = new TreeMap<>();
+    private int errors;
+    private String parsePath;
+
+    public long getWallNanos(Stage stage) {
+        return wallNanos[stage.ordinal()];
+    }
+
+    public long getCpuNanos(Stage stage) {
+        return cpuNanos[stage.ordinal()];
+    }
+
+    public long getTotalWallNanos() {
+        long total = 0;
+        for (long nanos : wallNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    public int getTokens() {
+        return tokens;
+    }
+
+    // Klassenaam → aantal, op naam gesorteerd
+    public Map<String, Integer> getNodesByType() {
+        return Collections.unmodifiableMap(nodesByType);
+    }
+
+    public int getNodes() {
+        int total = 0;
+        for (int count : nodesByType.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    public int getVariables() {
+        return nodesByType.getOrDefault("VariableAssignment", 0);
+    }
+
+    public int getRules() {
+        return nodesByType.getOrDefault("Stylerule", 0);
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * Het pad dat de parser nam, bijv. "SLL, AST tijdens het parsen" of "SLL, terugval op LL, parse tree";
+     * null als er (nog) niet geparst is.
+     */
+    public String getParsePath() {
+        return parsePath;
+    }
+
+    /**
+     * Start de meting van een stap; end() op het resultaat telt de tijd op bij deze stats.
+     */
+    public Timing start(Stage stage) {
+        return new Timing(this, stage);
+    }
+
+    /**
+     * Wist alle tijden en tellingen, bijv. als de parser opnieuw begint na een afgebroken poging.
+     */
+    public void reset() {
+        Arrays.fill(wallNanos, 0);
+        Arrays.fill(cpuNanos, 0);
+        tokens = 0;
+        nodesByType.clear();
+        errors = 0;
+        parsePath = null;
+    }
+
+    // Gezet door de parser (ReusableParser), die in een ander package zit
+    public void setTokens(int tokens) {
+        this.tokens = tokens;
+    }
+
+    public void setParsePath(String parsePath) {
+        this.parsePath = parsePath;
+    }
+
+    void setErrors(int errors) {
+        this.errors = errors;
+    }
+
+    // Telt alle knopen van de AST per klasse, met een expliciete stack zoals de andere boomwandelingen
+    void countNodes(AST ast) {
+        nodesByType.clear();
+        if (ast == null || ast.root == null) {
+            return;
+        }
+        HANStack<ASTNode> work = new HANStack<>();
+        work.push(ast.root);
+        while (!work.isEmpty()) {
+            ASTNode node = work.pop();
+            nodesByType.merge(node.getClass().getSimpleName(), 1, Integer::sum);
+            for (int i = 0; i < node.getChildCount(); i++) {
+                work.push(node.getChild(i));
+            }
+        }
+    }
+
+    // Publiceert de tellingen als JFR-event; stage is de stap waarna ze gelden
+    void commitCounts(Stage stage) {
+        PipelineCountsEvent event = new PipelineCountsEvent();
+        if (event.shouldCommit()) {
+            event.stage = stage.name();
+            event.tokens = tokens;
+            event.nodes = getNodes();
+            event.variables = getVariables();
+            event.rules = getRules();
+            event.errors = errors;
+            event.parsePath = parsePath;
+            event.commit();
+        }
+    }
+
+    // CPU-tijd van de huidige thread in nanoseconden; 0 als de JVM dat niet kan meten
+    public static long cpuNow() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            builder.append(String.format("%-10s %9.3f ms wall %9.3f ms cpu%n", stage,
+                    getWallNanos(stage) / 1e6, getCpuNanos(stage) / 1e6));
+        }
+        if (parsePath != null) {
+            builder.append("parser: ").append(parsePath).append(System.lineSeparator());
+        }
+        builder.append(String.format("tokens %d, knopen %d, variabelen %d, stylerules %d, fouten %d%n",
+                tokens, getNodes(), getVariables(), getRules(), errors));
+        return builder.toString();
+    }
+
+    /**
+     * Lopende meting van één stap, ook als JFR-event (begin bij start, commit bij end).
+     */
+    public static final class Timing {
+        private final PipelineStats stats;
+        private final Stage stage;
+        private final PipelineStageEvent event = new PipelineStageEvent();
+        private final long wallStart;
+        private final long cpuStart;
+
+        private Timing(PipelineStats stats, Stage stage) {
+            this.stats = stats;
+            this.stage = stage;
+            event.begin();
+            this.cpuStart = cpuNow();
+            this.wallStart = System.nanoTime();
+        }
+
+        public void end() {
+            end(0, 0);
+        }
+
+        /**
+         * Als end(), maar lexNanos (wandklok) en lexCpuNanos (CPU) van de gemeten tijd gaan naar LEX:
+         * de tijd in de lexer tijdens deze stap, apart gemeten door de aanroeper.
+         */
+        public void end(long lexNanos, long lexCpuNanos) {
+            long wall = System.nanoTime() - wallStart;
+            long cpu = cpuNow() - cpuStart;
+            long lexWall = Math.min(lexNanos, wall);
+            long lexCpu = Math.min(lexCpuNanos, cpu);
+            stats.wallNanos[Stage.LEX.ordinal()] += lexWall;
+            stats.cpuNanos[Stage.LEX.ordinal()] += lexCpu;
+            stats.wallNanos[stage.ordinal()] += wall - lexWall;
+            stats.cpuNanos[stage.ordinal()] += cpu - lexCpu;
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage.name();
+                event.cpuTime = cpu;
+                event.lexTime = lexWall;
+                event.lexCpuTime = lexCpu;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.transforms.Evaluator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Genereert CSS voor veel thema's uit één geparste en gecheckte stylesheet.
+ * - Een thema is een map van globale variabelenaam naar Literal die de waarde uit de stylesheet vervangt
+ *   (bijv. LinkColor → #0000ff). Variabelen die niet in het thema staan, houden hun eigen waarde.
+ * - Er wordt niet opnieuw geparst of gecheckt: elk thema is één Evaluator.evaluate op de gedeelde AST
+ *   (die daarbij niet verandert) plus één Generator-run.
+ * - Expressies worden één keer gecompileerd (ExpressionCompiler) en door alle thema's hergebruikt.
+ * - Thema's worden verdeeld over een pool van worker-threads; elke taak maakt een eigen Evaluator.
+ * - Overrides worden vooraf gecontroleerd: de variabele moet globaal bestaan en hetzelfde type hebben.
+ *   Een override vervangt elke globale assignment van die naam; krijgt de naam op verschillende plekken
+ *   een ander type, dan is er geen geldige override en wordt die naam geweigerd.
+ */
+public class ThemeCompiler {
+
+    private final AST ast;
+    private final int threads;
+    private final Map<String, ExpressionType> globals = new HashMap<>();
+    // Globale variabelen die in verschillende assignments een ander type krijgen
+    private final Set<String> mixedTypes = new HashSet<>();
+
+    /**
+     * @param checkedAst AST waarop de Checker zonder fouten heeft gedraaid
+     */
+    public ThemeCompiler(AST checkedAst, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Aantal threads moet minimaal 1 zijn, kreeg: " + threads);
+        }
+        this.ast = checkedAst;
+        this.threads = threads;
+        for (int i = 0; i < checkedAst.root.getChildCount(); i++) {
+            ASTNode child = checkedAst.root.getChild(i);
+            if (child instanceof VariableAssignment) {
+                VariableReference name = ((VariableAssignment) child).name;
+                if (name.type != null) {
+                    ExpressionType previous = globals.putIfAbsent(name.name, name.type);
+                    if (previous != null && previous != name.type) {
+                        mixedTypes.add(name.name);
+                    }
+                }
+            }
+        }
+        // Eén keer zonder overrides, zodat de gekozen takken al gecompileerd zijn voor de workers starten
+        compile(Map.of());
+    }
+
+    /**
+     * Genereert de CSS voor één thema.
+     */
+    public String compile(Map<String, Literal> theme) {
+        validate(theme);
+        return generate(theme);
+    }
+
+    /**
+     * Genereert de CSS voor alle thema's parallel. De resultaten staan in dezelfde volgorde als de invoer.
+     */
+    public List<String> compileAll(List<Map<String, Literal>> themes) throws InterruptedException {
+        for (Map<String, Literal> theme : themes) {
+            validate(theme);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>(themes.size());
+            for (Map<String, Literal> theme : themes) {
+                futures.add(pool.submit(() -> generate(theme)));
+            }
+            List<String> results = new ArrayList<>(themes.size());
+            for (Future<String> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Onverwachte fout tijdens genereren", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private String generate(Map<String, Literal> theme) {
+        // De gecompileerde expressies staan op de AST, dus een nieuwe Evaluator per thema kost weinig
+        Evaluator evaluator = new Evaluator();
+        evaluator.setCompileExpressions(true);
+        return new Generator().generate(evaluator.evaluate(ast, theme));
+    }
+
+    private void validate(Map<String, Literal> theme) {
+        for (Map.Entry<String, Literal> override : theme.entrySet()) {
+            ExpressionType expected = globals.get(override.getKey());
+            if (expected == null) {
+                throw new IllegalArgumentException("Onbekende globale variabele in thema: " + override.getKey());
+            }
+            if (mixedTypes.contains(override.getKey())) {
+                throw new IllegalArgumentException("Variabele '" + override.getKey()
+                        + "' krijgt globaal verschillende types en kan niet in een thema vervangen worden");
+            }
+            ExpressionType actual = typeOf(override.getValue());
+            if (actual != expected) {
+                throw new IllegalArgumentException("Variabele '" + override.getKey() + "' verwacht " + expected
+                        + ", maar kreeg: " + (actual == null ? "onbekend" : actual));
+            }
+        }
+    }
+
+    // Alleen de klasse van de literal bekijken: de override zelf (die thema's kunnen delen) blijft onaangeroerd
+    private static ExpressionType typeOf(Literal literal) {
+        if (literal instanceof PixelLiteral) return ExpressionType.PIXEL;
+        if (literal instanceof PercentageLiteral) return ExpressionType.PERCENTAGE;
+        if (literal instanceof ScalarLiteral) return ExpressionType.SCALAR;
+        if (literal instanceof ColorLiteral) return ExpressionType.COLOR;
+        if (literal instanceof BoolLiteral) return ExpressionType.BOOL;
+        return null;
+    }
+}
@@ -1,5 +1,6 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.datastructures.HANStack;
 import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
@@ -24,12 +25,23 @@ public class AST {
         collectErrors(errors,root);
         return errors;
     }
-    private void collectErrors(ArrayList<SemanticError> errors, ASTNode node) {
-	    if(node.hasError()) {
-	        errors.add(node.getError());
-        }
-        for(ASTNode child: node.getChildren()) {
-	        collectErrors(errors,child);
+    //Pre-order with an explicit stack (children pushed in reverse), so the errors keep the tree order.
+    //The children of the root are walked one by one, so the stack never holds every stylerule at once
+    private void collectErrors(ArrayList<SemanticError> errors, ASTNode root) {
+	    root.collectErrors(errors);
+	    HANStack<ASTNode> work = new HANStack<>();
+	    for(int child = 0; child < root.getChildCount(); child++) {
+	        collectErrors(errors, root.getChild(child), work);
+	    }
+    }
+    private void collectErrors(ArrayList<SemanticError> errors, ASTNode subtree, HANStack<ASTNode> work) {
+	    work.push(subtree);
+	    while(!work.isEmpty()) {
+	        ASTNode node = work.pop();
+	        node.collectErrors(errors);
+	        for(int i = node.getChildCount() - 1; i >= 0; i--) {
+	            work.push(node.getChild(i));
+	        }
         }
     }
 	@Override
@@ -1,5 +1,6 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.datastructures.HANStack;
 import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
@@ -24,6 +25,17 @@ public class ASTNode {
     public ArrayList<ASTNode> getChildren() {
         return new ArrayList<>();
     }
+    /*
+     Allocation-free alternative for getChildren(): the number of children and
+     indexed access to them, in the same order as getChildren(). Tree walkers
+     should use these, getChildren() builds a new list on every call.
+     */
+    public int getChildCount() {
+        return 0;
+    }
+    public ASTNode getChild(int index) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getChildCount());
+    }
     /*
     By implementing this method in a subclass you can easily create AST nodes
       incrementally.
@@ -38,6 +50,13 @@ public class ASTNode {
         return this;
     }
 
+    /*
+     Double dispatch for an ASTVisitor: every node type calls its own visit method.
+     */
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitNode(this, context);
+    }
+
     public SemanticError getError() {
         return this.error;
     }
@@ -50,36 +69,107 @@ public class ASTNode {
         return error != null;
     }
 
+    //Adds the error(s) of this node to the list; a node that can hold more than one error overrides this
+    public void collectErrors(List<SemanticError> errors) {
+        if (error != null) {
+            errors.add(error);
+        }
+    }
+
+    //Needed when the same tree is checked again, e.g. by an incremental compilation session
+    public void clearError() {
+        this.error = null;
+    }
+
+    /*
+     Compares the attributes of this node that are not children, like a name or a value.
+     equals() already checks the class and walks the children, so subclasses only override these two.
+     */
+    protected boolean attributesEqual(ASTNode other) {
+        return true;
+    }
+    protected int attributesHashCode() {
+        return 0;
+    }
+
+    //The walkers below use an explicit stack instead of recursion, so very deep trees
+    //(thousands of nested ifs, long operation chains) do not overflow the call stack
 	@Override
 	public String toString() {
-		StringBuilder result = new StringBuilder();
-		toString(result);
-		return result.toString();
-	}
-	private void toString(StringBuilder builder) {
-		builder.append("[");
-		builder.append(getNodeLabel());	
-		builder.append("|");
-		for(ASTNode child : getChildren()) {
-			child.toString(builder);
-		}	
-		builder.append("]");
+		StringBuilder builder = new StringBuilder();
+		//null marks the end of a node
+		HANStack<ASTNode> work = new HANStack<>();
+		work.push(this);
+		while (!work.isEmpty()) {
+			ASTNode node = work.pop();
+			if (node == null) {
+				builder.append("]");
+				continue;
+			}
+			builder.append("[");
+			builder.append(node.getNodeLabel());
+			builder.append("|");
+			work.push(null);
+			for (int i = node.getChildCount() - 1; i >= 0; i--) {
+				work.push(node.getChild(i));
+			}
+		}
+		return builder.toString();
 	}
 
 	@Override
     public boolean equals(Object o) {
-        if(! (o instanceof ASTNode))
-            return false;
-        //Compare all children
-        List<ASTNode> thisChildren = this.getChildren();
-        List<ASTNode> otherChildren = ((ASTNode) o).getChildren();
-        if(otherChildren.size() != thisChildren.size())
+        if (this == o)
+            return true;
+        if (!(o instanceof ASTNode) || !sameNode((ASTNode) o))
             return false;
-        for(int i = 0; i < thisChildren.size(); i++ ) {
-            if(!thisChildren.get(i).equals(otherChildren.get(i))) {
+        if (getChildCount() == 0)
+            return true;
+        //Compare all children, both trees side by side
+        HANStack<ASTNode> left = new HANStack<>();
+        HANStack<ASTNode> right = new HANStack<>();
+        left.push(this);
+        right.push((ASTNode) o);
+        while (!left.isEmpty()) {
+            ASTNode node = left.pop();
+            ASTNode other = right.pop();
+            if (node == other)
+                continue;
+            if (!node.sameNode(other))
                 return false;
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                left.push(node.getChild(i));
+                right.push(other.getChild(i));
             }
         }
         return true;
     }
+
+    @Override
+    public int hashCode() {
+        int hash = nodeHashCode();
+        if (getChildCount() == 0)
+            return hash;
+        //Combines the nodes in pre-order, so equal trees give the same hash
+        HANStack<ASTNode> work = new HANStack<>();
+        for (int i = getChildCount() - 1; i >= 0; i--) {
+            work.push(getChild(i));
+        }
+        while (!work.isEmpty()) {
+            ASTNode node = work.pop();
+            hash = 31 * hash + node.nodeHashCode();
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                work.push(node.getChild(i));
+            }
+        }
+        return hash;
+    }
+
+    private boolean sameNode(ASTNode other) {
+        return getClass() == other.getClass() && getChildCount() == other.getChildCount() && attributesEqual(other);
+    }
+
+    private int nodeHashCode() {
+        return (31 * getClass().getName().hashCode() + getChildCount()) * 31 + attributesHashCode();
+    }
 }
@@ -0,0 +1,125 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.NaryOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+/**
+ * Visitor over de AST (double dispatch via {@link ASTNode#accept(ASTVisitor, Object)}).
+ * @param <R> resultaat van een visit, bijv. het type van een expressie
+ * @param <C> context die tijdens het bezoeken wordt doorgegeven, bijv. de output of een scope
+ *
+ * Elke visit-methode valt standaard terug op die van de superklasse in de AST-hiërarchie
+ * (visitPixelLiteral → visitLiteral → visitExpression → visitNode). Een visitor hoeft dus alleen
+ * de knopen te implementeren waar hij iets mee doet. Komt er een nieuw knooptype bij, dan krijgt
+ * dat hier één nieuwe methode.
+ */
+public interface ASTVisitor<R, C> {
+
+    R visitNode(ASTNode node, C context);
+
+    default R visitStylesheet(Stylesheet node, C context) {
+        return visitNode(node, context);
+    }
+
+    default R visitStylerule(Stylerule node, C context) {
+        return visitNode(node, context);
+    }
+
+    default R visitDeclaration(Declaration node, C context) {
+        return visitNode(node, context);
+    }
+
+    default R visitPropertyName(PropertyName node, C context) {
+        return visitNode(node, context);
+    }
+
+    default R visitVariableAssignment(VariableAssignment node, C context) {
+        return visitNode(node, context);
+    }
+
+    default R visitIfClause(IfClause node, C context) {
+        return visitNode(node, context);
+    }
+
+    default R visitElseClause(ElseClause node, C context) {
+        return visitNode(node, context);
+    }
+
+    // Selectors
+    default R visitSelector(Selector node, C context) {
+        return visitNode(node, context);
+    }
+
+    default R visitClassSelector(ClassSelector node, C context) {
+        return visitSelector(node, context);
+    }
+
+    default R visitIdSelector(IdSelector node, C context) {
+        return visitSelector(node, context);
+    }
+
+    default R visitTagSelector(TagSelector node, C context) {
+        return visitSelector(node, context);
+    }
+
+    // Expressies
+    default R visitExpression(Expression node, C context) {
+        return visitNode(node, context);
+    }
+
+    default R visitVariableReference(VariableReference node, C context) {
+        return visitExpression(node, context);
+    }
+
+    default R visitOperation(Operation node, C context) {
+        return visitExpression(node, context);
+    }
+
+    default R visitAddOperation(AddOperation node, C context) {
+        return visitOperation(node, context);
+    }
+
+    default R visitSubtractOperation(SubtractOperation node, C context) {
+        return visitOperation(node, context);
+    }
+
+    default R visitMultiplyOperation(MultiplyOperation node, C context) {
+        return visitOperation(node, context);
+    }
+
+    // Geen Operation (die is binair), dus valt terug op visitExpression
+    default R visitNaryOperation(NaryOperation node, C context) {
+        return visitExpression(node, context);
+    }
+
+    // Literals
+    default R visitLiteral(Literal node, C context) {
+        return visitExpression(node, context);
+    }
+
+    default R visitBoolLiteral(BoolLiteral node, C context) {
+        return visitLiteral(node, context);
+    }
+
+    default R visitColorLiteral(ColorLiteral node, C context) {
+        return visitLiteral(node, context);
+    }
+
+    default R visitPercentageLiteral(PercentageLiteral node, C context) {
+        return visitLiteral(node, context);
+    }
+
+    default R visitPixelLiteral(PixelLiteral node, C context) {
+        return visitLiteral(node, context);
+    }
+
+    default R visitScalarLiteral(ScalarLiteral node, C context) {
+        return visitLiteral(node, context);
+    }
+}
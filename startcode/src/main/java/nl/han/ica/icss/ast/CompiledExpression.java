@@ -0,0 +1,19 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+/**
+ * Gecompileerde vorm van een gecheckte expressie (zie transforms.ExpressionCompiler).
+ * - Het type ligt vast bij het compileren, dus evalueren doet geen typecontroles meer.
+ * - Variabelen worden gelezen als frames[depth][slot], zoals de Checker ze gebonden heeft.
+ */
+public abstract class CompiledExpression {
+
+    public final ExpressionType type;
+
+    protected CompiledExpression(ExpressionType type) {
+        this.type = type;
+    }
+
+    public abstract Literal evaluate(Literal[][] frames);
+}
@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 /*
  * A Declaration defines a style property. Declarations are things like "width: 100px"
@@ -22,6 +21,11 @@ public class Declaration extends ASTNode {
 	    return "Declaration";
 	}
 
+	@Override
+	public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+		return visitor.visitDeclaration(this, context);
+	}
+
 	@Override
 	public ArrayList<ASTNode> getChildren() {
 
@@ -33,6 +37,18 @@ public class Declaration extends ASTNode {
 		return children;
 	}
 	@Override
+	public int getChildCount() {
+		return (property != null ? 1 : 0) + (expression != null ? 1 : 0);
+	}
+	@Override
+	public ASTNode getChild(int index) {
+		if(index == 0 && property != null)
+			return property;
+		if(index == (property != null ? 1 : 0) && expression != null)
+			return expression;
+		return super.getChild(index);
+	}
+	@Override
 	public ASTNode addChild(ASTNode child) {
 		if(child instanceof PropertyName) {
 			property = (PropertyName) child;
@@ -41,18 +57,4 @@ public class Declaration extends ASTNode {
 		}
 		return this;
 	}
-
-	@Override
-	public boolean equals(Object o) {
-		if (this == o) return true;
-		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		Declaration that = (Declaration) o;
-		return Objects.equals(property, that.property) &&
-				Objects.equals(expression, that.expression);
-	}
-	@Override
-	public int hashCode() {
-		return Objects.hash(property, expression);
-	}
 }
@@ -1,3 +1,7 @@
 package nl.han.ica.icss.ast;
 
-public abstract class Expression extends ASTNode { }
+public abstract class Expression extends ASTNode {
+
+    // Cache voor de Evaluator: deze expressie als CompiledExpression. Hoort niet bij equals/hashCode.
+    public CompiledExpression compiled;
+}
@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 public class IfClause extends ASTNode {
 
@@ -28,10 +27,16 @@ public class IfClause extends ASTNode {
     public String getNodeLabel() {
         return "If_Clause";
     }
+
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitIfClause(this, context);
+    }
     @Override
     public ArrayList<ASTNode> getChildren() {
         ArrayList<ASTNode> children = new ArrayList<>();
-        children.add(conditionalExpression);
+        if (conditionalExpression != null)
+            children.add(conditionalExpression);
         children.addAll(body);
         if (elseClause!=null)
             children.add(elseClause);
@@ -39,6 +44,22 @@ public class IfClause extends ASTNode {
         return children;
     }
 
+    @Override
+    public int getChildCount() {
+        return (conditionalExpression != null ? 1 : 0) + body.size() + (elseClause != null ? 1 : 0);
+    }
+    @Override
+    public ASTNode getChild(int index) {
+        if (conditionalExpression != null) {
+            if (index == 0)
+                return conditionalExpression;
+            index--;
+        }
+        if (index == body.size() && elseClause != null)
+            return elseClause;
+        return body.get(index);
+    }
+
     @Override
     public ASTNode addChild(ASTNode child) {
         if(child instanceof Expression)
@@ -50,26 +71,6 @@ public class IfClause extends ASTNode {
 
         return this;
     }
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        IfClause ifClause = (IfClause) o;
-        if (this.elseClause == null)
-            return Objects.equals(conditionalExpression, ifClause.getConditionalExpression()) &&
-                Objects.equals(body, ifClause.body);
-        else
-            return Objects.equals(conditionalExpression, ifClause.getConditionalExpression()) &&
-                    Objects.equals(body, ifClause.body) &&
-                    Objects.equals(elseClause, ifClause.elseClause);
-
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(conditionalExpression, body, elseClause);
-    }
 
     public Expression getConditionalExpression() {
         return conditionalExpression;
@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 public class Stylerule extends ASTNode {
 	
@@ -21,6 +20,11 @@ public class Stylerule extends ASTNode {
 	public String getNodeLabel() {
 		return "Stylerule";
 	}
+
+	@Override
+	public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+		return visitor.visitStylerule(this, context);
+	}
 	@Override
 	public ArrayList<ASTNode> getChildren() {
 		ArrayList<ASTNode> children = new ArrayList<>();
@@ -30,6 +34,15 @@ public class Stylerule extends ASTNode {
 		return children;
 	}
 
+	@Override
+	public int getChildCount() {
+		return selectors.size() + body.size();
+	}
+	@Override
+	public ASTNode getChild(int index) {
+		return index < selectors.size() ? selectors.get(index) : body.get(index - selectors.size());
+	}
+
     @Override
     public ASTNode addChild(ASTNode child) {
 		if(child instanceof Selector)
@@ -39,18 +52,4 @@ public class Stylerule extends ASTNode {
 
 		return this;
     }
-	@Override
-	public boolean equals(Object o) {
-		if (this == o) return true;
-		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		Stylerule stylerule = (Stylerule) o;
-		return Objects.equals(selectors, stylerule.selectors) &&
-				Objects.equals(body, stylerule.body);
-	}
-
-	@Override
-	public int hashCode() {
-		return Objects.hash(selectors, body);
-	}
 }
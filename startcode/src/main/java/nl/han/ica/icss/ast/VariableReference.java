@@ -1,10 +1,22 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.icss.ast.types.ExpressionType;
+
 import java.util.Objects;
 
 public class VariableReference extends Expression {
 
 	public String name;
+	// depth en slot zolang de Checker de referentie niet gezien heeft
+	public static final int UNBOUND = -1;
+	// depth en slot als de Checker de variabele niet kon binden; de fout staat dan al in de AST
+	public static final int UNDEFINED = -2;
+
+	// Plek en type van de variabele, ingevuld door de Checker: diepte van de scope (0 = globaal) en slot daarin.
+	// UNBOUND of UNDEFINED (en type null) zolang de referentie niet gebonden is. Hoort niet bij equals/hashCode.
+	public int depth = UNBOUND;
+	public int slot = UNBOUND;
+	public ExpressionType type;
 	
 	public VariableReference(String name) {
 		super();
@@ -17,17 +29,17 @@ public class VariableReference extends Expression {
 	}
 
 	@Override
-	public boolean equals(Object o) {
-		if (this == o) return true;
-		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		VariableReference that = (VariableReference) o;
-		return Objects.equals(name, that.name);
+	public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+		return visitor.visitVariableReference(this, context);
 	}
 
 	@Override
-	public int hashCode() {
+	protected boolean attributesEqual(ASTNode other) {
+		return Objects.equals(name, ((VariableReference) other).name);
+	}
 
-		return Objects.hash(name);
+	@Override
+	protected int attributesHashCode() {
+		return Objects.hashCode(name);
 	}
 }
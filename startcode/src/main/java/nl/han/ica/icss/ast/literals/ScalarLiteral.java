@@ -1,8 +1,9 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
 
 public class ScalarLiteral extends Literal {
     public int value;
@@ -19,16 +20,17 @@ public class ScalarLiteral extends Literal {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        ScalarLiteral that = (ScalarLiteral) o;
-        return value == that.value;
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitScalarLiteral(this, context);
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(value);
+    protected boolean attributesEqual(ASTNode other) {
+        return value == ((ScalarLiteral) other).value;
+    }
+
+    @Override
+    protected int attributesHashCode() {
+        return Integer.hashCode(value);
     }
 }
@@ -0,0 +1,165 @@
+package nl.han.ica.icss.ast.operations;
+
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.ASTVisitor;
+import nl.han.ica.icss.ast.Expression;
+import nl.han.ica.icss.checker.SemanticError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Platte keten van operaties met dezelfde prioriteit: een som (a + b - c) of een product (a * b * c).
+ * In plaats van een binaire boom met één niveau per operand ((a + b) - c) staan de operanden in één array
+ * en de operatoren in een tweede, zodat Checker en Evaluator de keten in één lus van links naar rechts afgaan.
+ * - operator(i) staat tussen operand(i - 1) en operand(i); operator(0) is er niet (null).
+ * - Een som bevat alleen PLUS en MIN, een product alleen MUL; een product kan een operand van een som zijn.
+ * - Het resultaat is gelijk aan dat van de binaire keten: ((operand(0) op(1) operand(1)) op(2) operand(2)) ...
+ * - Net als in de binaire keten kan elke operator een eigen fout hebben (setOperatorError).
+ */
+public class NaryOperation extends Expression {
+
+    public enum Operator {
+        PLUS("+", "AddOperation"), MIN("-", "SubtractOperation"), MUL("*", "MultiplyOperation");
+
+        public final String symbol;
+        // Naam van de binaire operatie, voor foutmeldingen
+        public final String operation;
+
+        Operator(String symbol, String operation) {
+            this.symbol = symbol;
+            this.operation = operation;
+        }
+    }
+
+    private Expression[] operands;
+    private Operator[] operators;
+    private int size;
+    // Fout per operator (zelfde index als getOperator); null zolang er geen enkele is
+    private SemanticError[] operatorErrors;
+
+    public NaryOperation(Expression first) {
+        operands = new Expression[4];
+        operators = new Operator[4];
+        operands[0] = first;
+        size = 1;
+    }
+
+    /**
+     * Voegt rechts een operand toe; de arrays groeien net als bij een ArrayList.
+     * @return deze knoop, zodat de parser hem direct weer op zijn stack kan leggen
+     */
+    public NaryOperation append(Operator operator, Expression operand) {
+        if (size == operands.length) {
+            operands = Arrays.copyOf(operands, size * 2);
+            operators = Arrays.copyOf(operators, size * 2);
+            if (operatorErrors != null) {
+                operatorErrors = Arrays.copyOf(operatorErrors, size * 2);
+            }
+        }
+        operators[size] = operator;
+        operands[size] = operand;
+        size++;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Expression getOperand(int index) {
+        return operands[index];
+    }
+
+    public Operator getOperator(int index) {
+        return operators[index];
+    }
+
+    public void setOperatorError(int index, String description) {
+        if (operatorErrors == null) {
+            operatorErrors = new SemanticError[operators.length];
+        }
+        operatorErrors[index] = new SemanticError(description);
+    }
+
+    public SemanticError getOperatorError(int index) {
+        return operatorErrors == null ? null : operatorErrors[index];
+    }
+
+    @Override
+    public boolean hasError() {
+        return super.hasError() || operatorErrors != null;
+    }
+
+    @Override
+    public void clearError() {
+        super.clearError();
+        operatorErrors = null;
+    }
+
+    // In de volgorde van de binaire boom: daar staat de laatste operator bovenaan
+    @Override
+    public void collectErrors(List<SemanticError> errors) {
+        super.collectErrors(errors);
+        if (operatorErrors == null) {
+            return;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            if (operatorErrors[i] != null) {
+                errors.add(operatorErrors[i]);
+            }
+        }
+    }
+
+    public boolean isProduct() {
+        return size > 1 && operators[1] == Operator.MUL;
+    }
+
+    @Override
+    public String getNodeLabel() {
+        StringBuilder label = new StringBuilder(isProduct() ? "Product (" : "Sum (");
+        for (int i = 1; i < size; i++) {
+            label.append(operators[i].symbol);
+        }
+        return label.append(")").toString();
+    }
+
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitNaryOperation(this, context);
+    }
+
+    @Override
+    public ArrayList<ASTNode> getChildren() {
+        return new ArrayList<>(Arrays.asList(operands).subList(0, size));
+    }
+
+    @Override
+    public int getChildCount() {
+        return size;
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        if (index < size) {
+            return operands[index];
+        }
+        return super.getChild(index);
+    }
+
+    @Override
+    protected boolean attributesEqual(ASTNode other) {
+        NaryOperation operation = (NaryOperation) other;
+        return Arrays.equals(operators, 0, size, operation.operators, 0, operation.size);
+    }
+
+    @Override
+    protected int attributesHashCode() {
+        int hash = 1;
+        for (int i = 1; i < size; i++) {
+            hash = 31 * hash + operators[i].ordinal();
+        }
+        return hash;
+    }
+}
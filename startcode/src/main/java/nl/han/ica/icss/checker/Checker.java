@@ -6,6 +6,7 @@ import nl.han.ica.icss.ast.literals.ColorLiteral;
 import nl.han.ica.icss.ast.literals.PixelLiteral;
 import nl.han.ica.icss.ast.operations.AddOperation;
 import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.NaryOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.types.ExpressionType;
 import nl.han.ica.icss.ast.literals.BoolLiteral;
@@ -13,69 +14,225 @@ import nl.han.ica.icss.ast.literals.PercentageLiteral;
 import nl.han.ica.icss.ast.literals.ScalarLiteral;
 
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import nl.han.ica.datastructures.HANScope;
+import nl.han.ica.datastructures.HANStack;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+/**
+ * Checker — controleert types, variabelen en properties; fouten komen op de knopen (setError).
+ * Met setParallel(true) worden de stylerules tegelijk gecheckt op de fork-join pool:
+ * - De globale assignments worden eerst op volgorde gecheckt. Elke stylerule krijgt een momentopname
+ *   (HANScope.copy) van de globale scope zoals die op zijn plek geldt; stylerules zonder assignment
+ *   ertussen delen dezelfde momentopname.
+ * - Een stylerule schrijft alleen in zijn eigen kind-scope en op zijn eigen knopen, dus de uitkomst
+ *   (fouten en bindingen) is dezelfde als sequentieel. AST.getErrors() loopt de boom op volgorde af,
+ *   dus ook de volgorde van de fouten is gelijk.
+ * Statements worden niet recursief afgelopen maar met een expliciete stack (HANStack), en expressies alleen
+ * tot een vaste diepte, zodat diep geneste if's of lange rekenketens de call stack niet laten overlopen.
+ */
 public class Checker {
-    private final LinkedList<HashMap<String, ExpressionType>> variableTypes = new LinkedList<>();
+    // Minimaal aantal stylerules per taak; kleinere stukken kosten meer aan verdelen dan ze opleveren
+    private static final int RULES_PER_TASK = 256;
+    // Diepte van een expressie tot waar recursief wordt afgedaald (zie inferType)
+    private static final int RECURSION_LIMIT = 64;
+
+    private HANScope<ExpressionType> variableTypes = new HANScope<>();
     private static final java.util.Set<String> ALLOWED_PROPS =
             java.util.Set.of("color","background-color","width","height");
-    public void check(AST ast) {
-        variableTypes.clear();
-        variableTypes.push(new HashMap<String, ExpressionType>());
-        checkStylesheet(ast.root);
+    private final StatementChecker statementChecker = new StatementChecker();
+    private final TypeInference typeInference = new TypeInference();
+    private boolean parallel = false;
+
+    // Statements die nog gecheckt moeten worden; null betekent: scope verlaten
+    private final HANStack<ASTNode> statements = new HANStack<>();
+    // Operaties waarvan de operanden nog bepaald worden (zie inferOperation)
+    private final HANStack<Expression> expressions = new HANStack<>();
+    private final HANStack<Boolean> rightDone = new HANStack<>();
+    private final HANStack<ExpressionType> types = new HANStack<>();
+    // Types van de operanden van de operatie die TypeInference bezoekt
+    private ExpressionType leftType;
+    private ExpressionType rightType;
+
+    public boolean isParallel() {
+        return parallel;
     }
 
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
 
-    private void checkStylesheet(Stylesheet sheet) {
-        for (ASTNode child : sheet.getChildren()) {
-            checkNode(child);
+    public void check(AST ast) {
+        variableTypes = new HANScope<>();
+        if (parallel) {
+            checkParallel(ast.root);
+        } else {
+            // Per statement, zodat de stack niet alle stylerules tegelijk hoeft te bevatten
+            for (ASTNode node : ast.root.body) {
+                checkNode(node);
+            }
         }
     }
 
+    /**
+     * Checkt één statement (stylerule of globale assignment) in een bestaande scope, voor incrementeel checken.
+     * - scope bevat de variabelen die op de plek van het statement gelden.
+     * - Een assignment komt in scope terecht; na een stylerule is scope weer zoals ervoor.
+     */
+    public void check(ASTNode statement, HANScope<ExpressionType> scope) {
+        variableTypes = scope;
+        checkNode(statement);
+    }
+
     private void checkNode(ASTNode node) {
-        if (node instanceof Stylerule) {
-            checkStylerule((Stylerule) node);
-        } else if (node instanceof VariableAssignment) {
-            checkVariableAssignment((VariableAssignment) node);
-        } else if (node instanceof Declaration) {
-            checkDeclaration((Declaration) node);
-        } else if (node instanceof IfClause) {
-            checkIfClause((IfClause)node);
-        }
-        else {
-            for (ASTNode child : node.getChildren()) {
-                checkNode(child);
+        int base = statements.size();
+        statements.push(node);
+        while (statements.size() > base) {
+            ASTNode next = statements.pop();
+            if (next == null) {
+                variableTypes = variableTypes.exit();
+            } else {
+                next.accept(statementChecker, null);
+            }
+        }
+    }
+
+    // Checkt een blok in een eigen scope. Declaraties en assignments vooraan worden direct gecheckt;
+    // vanaf het eerste geneste if gaat de rest (in omgekeerde volgorde) op de stack, zodat de volgorde klopt
+    private void checkBlock(List<ASTNode> body) {
+        variableTypes = variableTypes.enter();
+        statements.push(null);
+        int nested = 0;
+        while (nested < body.size() && !(body.get(nested) instanceof IfClause)) {
+            nested++;
+        }
+        for (int i = body.size() - 1; i >= nested; i--) {
+            statements.push(body.get(i));
+        }
+        for (int i = 0; i < nested; i++) {
+            body.get(i).accept(statementChecker, null);
+        }
+    }
+
+    private void checkParallel(Stylesheet stylesheet) {
+        List<Stylerule> rules = new ArrayList<>();
+        List<HANScope<ExpressionType>> scopes = new ArrayList<>();
+        HANScope<ExpressionType> snapshot = null;
+        for (ASTNode node : stylesheet.body) {
+            if (node instanceof Stylerule) {
+                if (snapshot == null) {
+                    snapshot = variableTypes.copy();
+                }
+                rules.add((Stylerule) node);
+                scopes.add(snapshot);
+            } else {
+                checkNode(node);
+                // Een assignment kan de globale scope veranderen
+                snapshot = null;
             }
         }
+        ForkJoinPool.commonPool().invoke(new RuleCheck(rules, scopes, 0, rules.size()));
     }
 
+    /**
+     * Checkt de stylerules from..to, elk in zijn eigen momentopname van de globale scope.
+     * Grote stukken worden gehalveerd; elk blad gebruikt een eigen Checker.
+     */
+    @SuppressWarnings("serial") // Fork-join taken worden nooit geserialiseerd
+    private static class RuleCheck extends RecursiveAction {
+        private final List<Stylerule> rules;
+        private final List<HANScope<ExpressionType>> scopes;
+        private final int from;
+        private final int to;
 
+        RuleCheck(List<Stylerule> rules, List<HANScope<ExpressionType>> scopes, int from, int to) {
+            this.rules = rules;
+            this.scopes = scopes;
+            this.from = from;
+            this.to = to;
+        }
 
-    private void checkStylerule(Stylerule rule) {
-        HashMap<String, ExpressionType> childScope = new HashMap<>();
-        if (!variableTypes.isEmpty()) {
-            for (Map.Entry<String, ExpressionType> expression : variableTypes.peek().entrySet()) {
-                childScope.put(expression.getKey(), expression.getValue());
+        @Override
+        protected void compute() {
+            if (to - from <= RULES_PER_TASK) {
+                Checker checker = new Checker();
+                for (int i = from; i < to; i++) {
+                    checker.check(rules.get(i), scopes.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RuleCheck(rules, scopes, from, middle), new RuleCheck(rules, scopes, middle, to));
+        }
+    }
+
+    /**
+     * Dispatch van statements naar de juiste check-methode.
+     * Knopen zonder eigen check (selectors e.d.) worden doorlopen via hun kinderen.
+     * Kinderen en blokken gaan op de stack van checkNode in plaats van direct gecheckt te worden.
+     */
+    private class StatementChecker implements ASTVisitor<Void, Void> {
+        @Override
+        public Void visitNode(ASTNode node, Void context) {
+            for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                statements.push(node.getChild(i));
             }
+            return null;
+        }
+
+        @Override
+        public Void visitStylerule(Stylerule node, Void context) {
+            checkStylerule(node);
+            return null;
+        }
+
+        @Override
+        public Void visitVariableAssignment(VariableAssignment node, Void context) {
+            checkVariableAssignment(node);
+            return null;
         }
-        variableTypes.push(childScope);
-        for (ASTNode node : rule.getChildren()) {
-            checkNode(node);
+
+        @Override
+        public Void visitDeclaration(Declaration node, Void context) {
+            checkDeclaration(node);
+            return null;
+        }
+
+        @Override
+        public Void visitIfClause(IfClause node, Void context) {
+            checkIfClause(node);
+            return null;
+        }
+
+        @Override
+        public Void visitElseClause(ElseClause node, Void context) {
+            checkElseClause(node);
+            return null;
         }
-        variableTypes.pop();
+    }
+
+
+
+    private void checkStylerule(Stylerule rule) {
+        // Selectors hebben niets te checken, alleen de body
+        checkBlock(rule.body);
     }
 
     private void checkVariableAssignment(VariableAssignment variableAssignment) {
         ExpressionType expression = inferType(variableAssignment.expression);
         if (expression == null) {
             variableAssignment.setError("Kan type van expressie niet bepalen voor variabele '" + variableAssignment.name.name + "'.");
+            variableAssignment.name.depth = variableAssignment.name.slot = VariableReference.UNDEFINED;
             return;
         }
         ensureScope();
-        variableTypes.peek().put(variableAssignment.name.name, expression);
+        // Bind de naam aan (diepte, slot) zodat de Evaluator zonder hashing kan opzoeken
+        variableAssignment.name.slot = variableTypes.put(variableAssignment.name.name, expression);
+        variableAssignment.name.depth = variableTypes.depth();
+        variableAssignment.name.type = expression;
     }
 
 
@@ -120,96 +277,223 @@ public class Checker {
         if(expression != ExpressionType.BOOL) {
             ifClause.setError("If-conditie moet BOOL zijn, kreeg: " + (expression == null ? "onbekend" : expression.toString())+".");
         }
-        variableTypes.push(copyTopScope());
-        for (ASTNode node : ifClause.body){
-            checkNode(node);
-        }
-            variableTypes.pop();
-
+        // Eerst de body in een eigen scope, daarna (onder op de stack) de else in een eigen scope
         if(ifClause.elseClause != null && ifClause.elseClause.body != null){
-            variableTypes.push(copyTopScope());
-            for (ASTNode node : ifClause.elseClause.body){
-                checkNode(node);
-            }
-            variableTypes.pop();
+            statements.push(ifClause.elseClause);
         }
+        checkBlock(ifClause.body);
+    }
+
+    private void checkElseClause(ElseClause elseClause) {
+        checkBlock(elseClause.body);
     }
 
     public void ensureScope() {
-        if (variableTypes.isEmpty()) variableTypes.push(new HashMap<String, ExpressionType>());
+        if (variableTypes == null) variableTypes = new HANScope<>();
     }
 
     private ExpressionType inferType(Expression expression) {
-        if (expression instanceof ColorLiteral) return ExpressionType.COLOR;
-        if (expression instanceof PixelLiteral) return ExpressionType.PIXEL;
-        if (expression instanceof PercentageLiteral) return ExpressionType.PERCENTAGE;
-        if (expression instanceof ScalarLiteral) return ExpressionType.SCALAR;
-        if (expression instanceof BoolLiteral) return ExpressionType.BOOL;
-        if (expression instanceof VariableReference) {
-            String name = ((VariableReference) expression).name;
-            return resolve(name);
+        if (expression != null) {
+            // Bindingen en types kunnen veranderd zijn: een eerder gecompileerde vorm is niet meer geldig
+            expression.compiled = null;
         }
+        return inferType(expression, 0);
+    }
 
-        if (expression instanceof Operation) {
-            Operation operation = (Operation) expression;
-            ExpressionType left = inferType(operation.lhs);
-            ExpressionType right = inferType(operation.rhs);
+    // Gewone expressies zijn een paar termen diep: die gaan recursief (dat is het snelst).
+    // Pas vanaf RECURSION_LIMIT niveaus neemt inferOperation het over met een expliciete stack.
+    private ExpressionType inferType(Expression expression, int depth) {
+        if (expression == null) return null;
+        if (expression instanceof NaryOperation) return inferChain((NaryOperation) expression, depth);
+        if (!(expression instanceof Operation)) return expression.accept(typeInference, null);
+        Operation operation = (Operation) expression;
+        if (depth == RECURSION_LIMIT) return inferOperation(operation);
+        ExpressionType left = inferType(operation.lhs, depth + 1);
+        ExpressionType right = inferType(operation.rhs, depth + 1);
+        return combine(operation, left, right);
+    }
 
+    // Bezoekt een operatie waarvan de operanden al een type hebben
+    private ExpressionType combine(Operation operation, ExpressionType left, ExpressionType right) {
+        leftType = left;
+        rightType = right;
+        return operation.accept(typeInference, null);
+    }
 
-            if (left == null || right == null) {
-                operation.setError("Ongeldige operand(en) voor " + operation.getClass().getSimpleName());
-                return null;
-            }
-// Keer
-            if (operation instanceof MultiplyOperation) {
-                if (left == ExpressionType.SCALAR && (right == ExpressionType.PIXEL || right == ExpressionType.PERCENTAGE)) {
-                    return right;
-                }
-                if ((left == ExpressionType.PIXEL || left == ExpressionType.PERCENTAGE) && right == ExpressionType.SCALAR) {
-                    return left;
-                }
-                if (left == ExpressionType.SCALAR && right == ExpressionType.SCALAR) {
-                    return ExpressionType.SCALAR;
-                }
-                if (left == ExpressionType.COLOR || right == ExpressionType.COLOR) {
-                    operation.setError("Vermenigvuldiging met color is niet toegestaan.");
-                    return null;
-                }
-                operation.setError("Ongeldige vermenigvuldiging: " + left + " * " + right);
-                return null;
+    // Post-order zonder recursie: daal langs de linkeroperanden af tot een blad, ga dan omhoog.
+    // Een operatie op de stack wacht eerst op zijn rechteroperand (rightDone false), daarna wordt
+    // hij zelf bezocht met de twee bovenste types als operanden.
+    private ExpressionType inferOperation(Operation root) {
+        int base = expressions.size();
+        Expression node = root;
+        while (true) {
+            while (node instanceof Operation) {
+                expressions.push(node);
+                rightDone.push(Boolean.FALSE);
+                node = ((Operation) node).lhs;
             }
-// plus/Min
-            if (operation instanceof AddOperation || operation instanceof SubtractOperation) {
-                if (left == ExpressionType.COLOR || right == ExpressionType.COLOR) {
-                    operation.setError("Kleur mag niet gebruikt worden in + of -.");
-                    return null;
+            types.push(node == null ? null : node.accept(typeInference, null));
+            while (true) {
+                if (expressions.size() == base) {
+                    return types.pop();
                 }
-                if (left == right && (left == ExpressionType.PIXEL || left == ExpressionType.PERCENTAGE || left == ExpressionType.SCALAR)) {
-                    return left;
+                if (rightDone.pop()) {
+                    ExpressionType right = types.pop();
+                    types.push(combine((Operation) expressions.pop(), types.pop(), right));
+                } else {
+                    rightDone.push(Boolean.TRUE);
+                    node = ((Operation) expressions.peek()).rhs;
+                    break;
                 }
-                operation.setError("Ongeldige optelling/aftrekking: " + left + " en " + right + " zijn niet compatibel.");
-                return null;
             }
+        }
+    }
+
+    /**
+     * Bepaalt het type van een expressie; null als dat niet kan (de fout staat dan op de knoop).
+     * Een operatie wordt pas bezocht als de types van zijn operanden al bepaald zijn; die staan
+     * dan in leftType en rightType (zie combine).
+     */
+    private class TypeInference implements ASTVisitor<ExpressionType, Void> {
+        @Override
+        public ExpressionType visitNode(ASTNode node, Void context) {
+            return null;
+        }
+
+        @Override
+        public ExpressionType visitColorLiteral(ColorLiteral node, Void context) {
+            return ExpressionType.COLOR;
+        }
+
+        @Override
+        public ExpressionType visitPixelLiteral(PixelLiteral node, Void context) {
+            return ExpressionType.PIXEL;
+        }
+
+        @Override
+        public ExpressionType visitPercentageLiteral(PercentageLiteral node, Void context) {
+            return ExpressionType.PERCENTAGE;
+        }
+
+        @Override
+        public ExpressionType visitScalarLiteral(ScalarLiteral node, Void context) {
+            return ExpressionType.SCALAR;
+        }
+
+        @Override
+        public ExpressionType visitBoolLiteral(BoolLiteral node, Void context) {
+            return ExpressionType.BOOL;
+        }
+
+        @Override
+        public ExpressionType visitVariableReference(VariableReference node, Void context) {
+            return resolve(node);
+        }
+
+        @Override
+        public ExpressionType visitOperation(Operation operation, Void context) {
             operation.setError("Onbekende operatie: " + operation.getClass().getSimpleName());
             return null;
         }
+// Keer
+        @Override
+        public ExpressionType visitMultiplyOperation(MultiplyOperation operation, Void context) {
+            return multiply(operation, 0, leftType, rightType);
+        }
+// plus/Min
+        @Override
+        public ExpressionType visitAddOperation(AddOperation operation, Void context) {
+            return additive(operation, 0, leftType, rightType);
+        }
 
-        return null;
+        @Override
+        public ExpressionType visitSubtractOperation(SubtractOperation operation, Void context) {
+            return additive(operation, 0, leftType, rightType);
+        }
+
+        @Override
+        public ExpressionType visitNaryOperation(NaryOperation operation, Void context) {
+            return inferChain(operation, 0);
+        }
     }
-// Zoekt het type variable op
-    private ExpressionType resolve(String name) {
-        for (HashMap<String, ExpressionType> scope : variableTypes) {
-            if (scope.containsKey(name)) return scope.get(name);
+
+    // Een som of product in één lus van links naar rechts, met dezelfde regels en meldingen als de binaire
+    // operaties: elke operator krijgt zijn eigen fout, ook "Ongeldige operand(en)" na een eerdere fout
+    private ExpressionType inferChain(NaryOperation operation, int depth) {
+        ExpressionType type = inferType(operation.getOperand(0), depth + 1);
+        for (int i = 1; i < operation.size(); i++) {
+            ExpressionType right = inferType(operation.getOperand(i), depth + 1);
+            type = operation.getOperator(i) == NaryOperation.Operator.MUL
+                    ? multiply(operation, i, type, right)
+                    : additive(operation, i, type, right);
         }
-        return null;
+        return type;
     }
 
-    private HashMap<String, ExpressionType> copyTopScope() {
-        HashMap<String, ExpressionType> map = new HashMap<>();
-        if (!variableTypes.isEmpty()) map.putAll(variableTypes.peek()); {
-            return map;
+    // index: de operator binnen een NaryOperation; bij een binaire operatie 0
+    private ExpressionType multiply(Expression operation, int index, ExpressionType left, ExpressionType right) {
+        if (left == null || right == null) {
+            return invalidOperands(operation, index);
+        }
+        if (left == ExpressionType.SCALAR && (right == ExpressionType.PIXEL || right == ExpressionType.PERCENTAGE)) {
+            return right;
+        }
+        if ((left == ExpressionType.PIXEL || left == ExpressionType.PERCENTAGE) && right == ExpressionType.SCALAR) {
+            return left;
+        }
+        if (left == ExpressionType.SCALAR && right == ExpressionType.SCALAR) {
+            return ExpressionType.SCALAR;
         }
+        if (left == ExpressionType.COLOR || right == ExpressionType.COLOR) {
+            return fail(operation, index, "Vermenigvuldiging met color is niet toegestaan.");
+        }
+        return fail(operation, index, "Ongeldige vermenigvuldiging: " + left + " * " + right);
     }
 
+    private ExpressionType additive(Expression operation, int index, ExpressionType left, ExpressionType right) {
+        if (left == null || right == null) {
+            return invalidOperands(operation, index);
+        }
+        if (left == ExpressionType.COLOR || right == ExpressionType.COLOR) {
+            return fail(operation, index, "Kleur mag niet gebruikt worden in + of -.");
+        }
+        if (left == right && (left == ExpressionType.PIXEL || left == ExpressionType.PERCENTAGE || left == ExpressionType.SCALAR)) {
+            return left;
+        }
+        return fail(operation, index, "Ongeldige optelling/aftrekking: " + left + " en " + right + " zijn niet compatibel.");
+    }
+
+    // Met de naam van de binaire operatie, ook voor een operator in een NaryOperation
+    private ExpressionType invalidOperands(Expression operation, int index) {
+        String name = operation instanceof NaryOperation
+                ? ((NaryOperation) operation).getOperator(index).operation
+                : operation.getClass().getSimpleName();
+        return fail(operation, index, "Ongeldige operand(en) voor " + name);
+    }
+
+    // Zet de fout op de operatie, of bij een NaryOperation op de operator met deze index
+    private ExpressionType fail(Expression operation, int index, String description) {
+        if (operation instanceof NaryOperation) {
+            ((NaryOperation) operation).setOperatorError(index, description);
+        } else {
+            operation.setError(description);
+        }
+        return null;
+    }
+// Zoekt het type variable op en bindt de referentie aan (diepte, slot)
+    private ExpressionType resolve(VariableReference reference) {
+        HANScope<ExpressionType> scope = variableTypes.lookupScope(reference.name);
+        if (scope == null) {
+            reference.depth = reference.slot = VariableReference.UNDEFINED;
+            reference.type = null;
+            return null;
+        }
+        reference.depth = scope.depth();
+        reference.slot = scope.slotOf(reference.name);
+        reference.type = scope.valueAt(reference.slot);
+        return reference.type;
+    }
+
+
 
 }
@@ -0,0 +1,344 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.PipelineHistograms;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Headless compiler voor grote hoeveelheden .icss-bestanden.
+ * - Elk bestand krijgt een eigen {@link Pipeline} (parse → check → transform → generate),
+ *   een Pipeline wordt dus nooit tussen threads gedeeld.
+ * - De bestanden worden verdeeld over een pool van worker-threads.
+ * - De CSS wordt naast de invoer geschreven (foo.icss → foo.css), daarna volgt een samenvatting.
+ *   Er wordt via een tijdelijk bestand geschreven, zodat een mislukte run de vorige CSS niet beschadigt.
+ * - Met --cache wordt elk resultaat (CSS en foutmeldingen) op schijf bewaard onder een hash van de bron;
+ *   ongewijzigde bestanden worden bij een volgende run niet opnieuw gecompileerd (zie {@link CompilationCache}).
+ * - Met --watch blijft de compiler na de eerste run draaien en compileert hij gewijzigde bestanden
+ *   opnieuw zodra ze worden opgeslagen (zie {@link WatchCompiler}).
+ * - Met --minify wordt de CSS zonder overbodige witruimte geschreven.
+ * - Met --optimize worden overschreven declaraties weggelaten en stylerules met dezelfde body samengevoegd.
+ * - Met --stats meet elke Pipeline zijn stappen (Pipeline.setCollectStats); na de samenvatting volgen
+ *   histogrammen over alle gecompileerde bestanden (zie {@link PipelineHistograms}).
+ *
+ * Gebruik: BatchCompiler [-j threads] [--minify] [--optimize] [--stats] [--cache directory [--cache-size MB]] [--watch [--debounce ms]] pad|directory|glob...
+ */
+public class BatchCompiler {
+
+    private static final long DEFAULT_CACHE_MB = 256;
+
+    private final int threads;
+    private CompilationCache cache;
+    private boolean minify = false;
+    private boolean optimize = false;
+    private PipelineHistograms stats;
+
+    public BatchCompiler(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Aantal threads moet minimaal 1 zijn, kreeg: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public void setMinify(boolean minify) {
+        this.minify = minify;
+    }
+
+    public void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+
+    // Opties die de uitvoer veranderen, als onderdeel van de cachesleutel
+    public String options() {
+        List<String> options = new ArrayList<>();
+        if (minify) {
+            options.add("minify");
+        }
+        if (optimize) {
+            options.add("optimize");
+        }
+        return String.join(" ", options);
+    }
+
+    // null: zonder cache
+    public void setCache(CompilationCache cache) {
+        this.cache = cache;
+    }
+
+    // null: niet meten; anders komen de stats van elke compilatie (niet uit de cache) hierin
+    public void setStats(PipelineHistograms stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Compileert alle bronbestanden parallel. De resultaten staan in dezelfde volgorde als de invoer.
+     */
+    public List<CompileResult> compileAll(List<Path> sources) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CompileResult>> futures = new ArrayList<>(sources.size());
+            for (Path source : sources) {
+                futures.add(pool.submit(() -> compile(source)));
+            }
+            List<CompileResult> results = new ArrayList<>(sources.size());
+            for (Future<CompileResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Onverwachte fout tijdens compileren", e.getCause());
+                }
+            }
+            evictCacheIfGrown();
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Eén opruimronde na een batch, in plaats van in put() op de worker-threads
+    void evictCacheIfGrown() {
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.evictIfGrown();
+        } catch (IOException e) {
+            // Niet kunnen opruimen mag de batch niet laten mislukken; de volgende batch probeert het opnieuw
+        }
+    }
+
+    /**
+     * Compileert één bestand met een eigen Pipeline en schrijft de CSS alleen weg als er geen fouten zijn.
+     */
+    public CompileResult compile(Path source) {
+        long start = System.nanoTime();
+        Path output = outputPath(source);
+        List<String> errors;
+        boolean cached = false;
+        try {
+            String text = Files.readString(source, StandardCharsets.UTF_8);
+            if (cache != null) {
+                String key = cache.key(text);
+                CompilationCache.Entry entry = cache.get(key);
+                cached = entry != null;
+                if (entry == null) {
+                    entry = compileToString(text, minify, optimize, stats);
+                    cache.put(key, entry.css, entry.errors);
+                }
+                if (entry.errors.isEmpty()) {
+                    writeIfChanged(output, entry.css);
+                }
+                errors = entry.errors;
+            } else {
+                Pipeline pipeline = new Pipeline();
+                pipeline.setMinify(minify);
+                pipeline.setOptimize(optimize);
+                pipeline.setCollectStats(stats != null);
+                pipeline.parseString(text);
+                if (pipeline.isParsed() && pipeline.check()) {
+                    pipeline.transform();
+                    writeAtomically(output, pipeline::generate);
+                }
+                errors = new ArrayList<>(pipeline.getErrors());
+                if (stats != null) {
+                    stats.add(pipeline.getStats());
+                }
+            }
+        } catch (IOException e) {
+            errors = Collections.singletonList("I/O-fout: " + e);
+        } catch (RuntimeException | Error e) {
+            // Eén onverwerkbaar bestand (bijv. te diep genest) mag de rest van de batch niet stoppen;
+            // alleen als de JVM zelf in nood is (geheugen op) wel
+            if (e instanceof VirtualMachineError && !(e instanceof StackOverflowError)) {
+                throw e;
+            }
+            errors = Collections.singletonList("Interne fout: " + e);
+        }
+        return new CompileResult(source, output, errors, System.nanoTime() - start, cached);
+    }
+
+    private interface Content {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    // Eerst naar een tijdelijk bestand in dezelfde directory, dan in één keer over de uitvoer heen:
+    // een fout tijdens het genereren laat de vorige CSS staan in plaats van een leeg of half bestand
+    private static void writeAtomically(Path output, Content content) throws IOException {
+        Path temp = output.resolveSibling("." + output.getFileName() + "."
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW)) {
+                content.writeTo(writer);
+            }
+            Files.move(temp, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Een ongewijzigd uitvoerbestand niet opnieuw schrijven: lezen is veel goedkoper dan schrijven + verplaatsen
+    private static void writeIfChanged(Path output, String css) throws IOException {
+        byte[] bytes = css.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (Files.size(output) == bytes.length && Arrays.equals(Files.readAllBytes(output), bytes)) {
+                return;
+            }
+        } catch (NoSuchFileException e) {
+            // Nog niet gegenereerd
+        }
+        writeAtomically(output, writer -> writer.write(css));
+    }
+
+    private static CompilationCache.Entry compileToString(String text, boolean minify, boolean optimize,
+                                                          PipelineHistograms stats) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.setMinify(minify);
+        pipeline.setOptimize(optimize);
+        pipeline.setCollectStats(stats != null);
+        pipeline.parseString(text);
+        String css = "";
+        if (pipeline.isParsed() && pipeline.check()) {
+            pipeline.transform();
+            css = pipeline.generate();
+        }
+        if (stats != null) {
+            stats.add(pipeline.getStats());
+        }
+        return new CompilationCache.Entry(css, new ArrayList<>(pipeline.getErrors()));
+    }
+
+    public static Path outputPath(Path source) {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return source.resolveSibling(base + ".css");
+    }
+
+    public static void report(List<CompileResult> results, long wallNanos, int threads, PrintStream out) {
+        int failed = 0;
+        int cached = 0;
+        long cpuNanos = 0;
+        for (CompileResult result : results) {
+            cpuNanos += result.nanos;
+            if (result.cached) {
+                cached++;
+            }
+            if (!result.isSuccess()) {
+                failed++;
+                out.println(result.source + ":");
+                for (String error : result.errors) {
+                    out.println("  " + error);
+                }
+            }
+        }
+        out.printf("%d bestand(en) verwerkt, %d gelukt, %d mislukt, %d uit cache in %d ms (%d thread(s), %d ms werk in totaal)%n",
+                results.size(), results.size() - failed, failed, cached,
+                wallNanos / 1_000_000, threads, cpuNanos / 1_000_000);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path cacheDirectory = null;
+        long cacheMegabytes = DEFAULT_CACHE_MB;
+        boolean watch = false;
+        boolean minify = false;
+        boolean optimize = false;
+        boolean collectStats = false;
+        long debounceMillis = WatchCompiler.DEFAULT_DEBOUNCE_MILLIS;
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-j") || args[i].equals("--threads")
+                    || args[i].equals("--cache") || args[i].equals("--cache-size")
+                    || args[i].equals("--debounce")) {
+                if (i + 1 >= args.length) {
+                    usage();
+                    return;
+                }
+                String option = args[i];
+                String value = args[++i];
+                try {
+                    if (option.equals("--cache")) {
+                        cacheDirectory = Path.of(value);
+                    } else if (option.equals("--cache-size")) {
+                        cacheMegabytes = Long.parseLong(value);
+                    } else if (option.equals("--debounce")) {
+                        debounceMillis = Long.parseLong(value);
+                    } else {
+                        threads = Integer.parseInt(value);
+                    }
+                } catch (NumberFormatException e) {
+                    usage();
+                    return;
+                }
+            } else if (args[i].equals("--watch")) {
+                watch = true;
+            } else if (args[i].equals("--minify")) {
+                minify = true;
+            } else if (args[i].equals("--optimize")) {
+                optimize = true;
+            } else if (args[i].equals("--stats")) {
+                collectStats = true;
+            } else {
+                inputs.add(args[i]);
+            }
+        }
+        if (inputs.isEmpty() || threads < 1 || cacheMegabytes < 0 || debounceMillis < 0) {
+            usage();
+            return;
+        }
+
+        List<Path> sources = SourceFiles.collect(inputs);
+        BatchCompiler compiler = new BatchCompiler(threads);
+        compiler.setMinify(minify);
+        compiler.setOptimize(optimize);
+        PipelineHistograms stats = collectStats ? new PipelineHistograms() : null;
+        compiler.setStats(stats);
+        CompilationCache cache = null;
+        if (cacheDirectory != null) {
+            cache = new CompilationCache(cacheDirectory, cacheMegabytes * 1024 * 1024, compiler.options());
+            compiler.setCache(cache);
+        }
+        long start = System.nanoTime();
+        List<CompileResult> results = compiler.compileAll(sources);
+        report(results, System.nanoTime() - start, threads, System.out);
+        if (stats != null) {
+            System.out.print(stats);
+        }
+        if (watch) {
+            try (WatchCompiler watcher = WatchCompiler.forArguments(compiler, inputs, debounceMillis)) {
+                System.out.println("Wachten op wijzigingen (Ctrl+C om te stoppen)...");
+                watcher.run(System.out);
+            }
+            return;
+        }
+
+        for (CompileResult result : results) {
+            if (!result.isSuccess()) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Gebruik: BatchCompiler [-j threads] [--minify] [--optimize] [--stats] [--cache directory [--cache-size MB]]"
+                + " [--watch [--debounce ms]] pad|directory|glob...");
+        System.exit(2);
+    }
+}
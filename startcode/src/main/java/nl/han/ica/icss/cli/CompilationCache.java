@@ -0,0 +1,302 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.Pipeline;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistente cache van compilatieresultaten (CSS + foutmeldingen) op de lokale schijf.
+ * - De sleutel is een SHA-256 over de toolversie, de compileeropties en de brontekst;
+ *   een andere versie of andere opties geven dus vanzelf andere sleutels. De toolversie is een digest van
+ *   de eigen gecompileerde klassen (nl/han/ica/..., in de jar of classes-directory), zodat elke wijziging
+ *   aan de compiler de oude entries ongeldig maakt zonder dat iemand een versienummer hoeft op te hogen.
+ *   Meegebundelde dependencies (antlr, guava, javafx) tellen niet mee: die zijn groot en veranderen
+ *   alleen samen met de pom.
+ * - Elk resultaat is één bestand: directory/ab/abcdef....entry (eerste twee tekens als subdirectory).
+ * - Schrijven gaat via een tijdelijk bestand in dezelfde directory en een atomic move, zodat
+ *   andere processen nooit een half geschreven entry lezen.
+ * - Een hit zet de wijzigingstijd van de entry op nu; bij opruimen gaan de oudste entries eerst (LRU)
+ *   tot de totale grootte weer onder maxBytes zit. Opruimen gebeurt onder een FileLock op
+ *   directory/cache.lock, zodat maar één proces tegelijk opruimt. put() ruimt zelf niet op: de aanroeper
+ *   doet dat na een batch (evictIfGrown of evict), zodat workers niet op het aflopen van de cache wachten.
+ * - Kapotte of onleesbare entries tellen als miss en worden verwijderd.
+ */
+public class CompilationCache {
+
+    // Verhoog bij een wijziging in het bestandsformaat van de entries
+    private static final int FORMAT = 1;
+    private static final String FALLBACK_VERSION = "2020.1.0-September";
+    private static final String CLASS_SUFFIX = ".class";
+    // Alleen de eigen klassen gaan in de toolversie, niet de meegebundelde dependencies
+    private static final String CODE_PREFIX = "nl/han/ica/";
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * Eén opgeslagen resultaat.
+     */
+    public static class Entry {
+        public final String css;
+        public final List<String> errors;
+
+        public Entry(String css, List<String> errors) {
+            this.css = css;
+            this.errors = errors;
+        }
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    private final String options;
+    // Bytes geschreven sinds de laatste opruimronde; boven 10% van maxBytes ruimt evictIfGrown op
+    private final AtomicLong writtenSinceEviction = new AtomicLong();
+
+    /**
+     * @param options de compileeropties die de uitvoer beïnvloeden, als tekst (onderdeel van de sleutel)
+     */
+    public CompilationCache(Path directory, long maxBytes, String options) throws IOException {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Cachegrootte moet minimaal 1 byte zijn, kreeg: " + maxBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.options = options;
+    }
+
+    public static String toolVersion() {
+        return BuildDigest.VALUE + "/" + FORMAT;
+    }
+
+    public String key(String source) {
+        MessageDigest digest = sha256();
+        digest.update(toolVersion().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return hex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Digest over de namen en inhoud van de .class-bestanden onder CODE_PREFIX waar Pipeline uit geladen is,
+     * op naam gesorteerd. Alleen de inhoud telt (geen tijdstempels in de jar), dus dezelfde code opnieuw bouwen
+     * geeft dezelfde versie. Eén keer berekend, bij het eerste gebruik.
+     */
+    private static class BuildDigest {
+        static final String VALUE = compute();
+
+        private static String compute() {
+            try {
+                Path location = Path.of(Pipeline.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+                MessageDigest digest = sha256();
+                if (Files.isDirectory(location)) {
+                    List<Path> classes;
+                    Path code = location.resolve(CODE_PREFIX);
+                    try (Stream<Path> files = Files.walk(code)) {
+                        classes = files.filter(file -> file.toString().endsWith(CLASS_SUFFIX)).sorted()
+                                .collect(Collectors.toList());
+                    }
+                    for (Path file : classes) {
+                        update(digest, location.relativize(file).toString().replace(File.separatorChar, '/'),
+                                Files.readAllBytes(file));
+                    }
+                } else {
+                    try (JarFile jar = new JarFile(location.toFile())) {
+                        List<JarEntry> classes = jar.stream()
+                                .filter(entry -> entry.getName().startsWith(CODE_PREFIX) && entry.getName().endsWith(CLASS_SUFFIX))
+                                .sorted(Comparator.comparing(JarEntry::getName)).collect(Collectors.toList());
+                        for (JarEntry entry : classes) {
+                            try (InputStream in = jar.getInputStream(entry)) {
+                                update(digest, entry.getName(), in.readAllBytes());
+                            }
+                        }
+                    }
+                }
+                return hex(digest.digest());
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                // Geen leesbare code source (bijv. een custom classloader): dan alleen het versienummer
+                String version = Pipeline.class.getPackage().getImplementationVersion();
+                return version != null ? version : FALLBACK_VERSION;
+            }
+        }
+
+        private static void update(MessageDigest digest, String name, byte[] content) {
+            digest.update(name.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(content);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 zit in elke JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return het opgeslagen resultaat, of null bij een miss
+     */
+    public Entry get(String key) {
+        Path file = entryPath(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT) {
+                throw new IOException("Onbekend formaat");
+            }
+            int errorCount = in.readInt();
+            List<String> errors = new ArrayList<>(errorCount);
+            for (int i = 0; i < errorCount; i++) {
+                errors.add(in.readUTF());
+            }
+            byte[] css = new byte[in.readInt()];
+            in.readFully(css);
+            touch(file);
+            return new Entry(new String(css, StandardCharsets.UTF_8), Collections.unmodifiableList(errors));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // Kapot (of net opgeruimd): behandelen als miss
+            deleteQuietly(file);
+            return null;
+        }
+    }
+
+    public void put(String key, String css, List<String> errors) throws IOException {
+        Path file = entryPath(key);
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), key, TEMP_SUFFIX);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT);
+                out.writeInt(errors.size());
+                for (String error : errors) {
+                    out.writeUTF(error);
+                }
+                byte[] bytes = css.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            long size = Files.size(temp);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            writtenSinceEviction.addAndGet(size);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * Ruimt op (zie evict) als er sinds de vorige opruimronde meer dan 10% van maxBytes geschreven is.
+     * Bedoeld voor na een batch, op de thread die de batch startte.
+     */
+    public void evictIfGrown() throws IOException {
+        if (writtenSinceEviction.get() > maxBytes / 10) {
+            evict();
+        }
+    }
+
+    /**
+     * Verwijdert de minst recent gebruikte entries tot de cache niet groter is dan maxBytes.
+     * Doet niets als een ander proces (of thread) al aan het opruimen is.
+     */
+    public synchronized void evict() throws IOException {
+        writtenSinceEviction.set(0);
+        try (FileChannel channel = FileChannel.open(directory.resolve("cache.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock == null) {
+                return;
+            }
+            List<Path> entries = new ArrayList<>();
+            List<BasicFileAttributes> attributes = new ArrayList<>();
+            long total = 0;
+            long now = System.currentTimeMillis();
+            try (Stream<Path> files = Files.walk(directory, 2)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName().toString();
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    } catch (NoSuchFileException e) {
+                        continue;
+                    }
+                    if (name.endsWith(ENTRY_SUFFIX)) {
+                        entries.add(file);
+                        attributes.add(attrs);
+                        total += attrs.size();
+                    } else if (name.endsWith(TEMP_SUFFIX) && now - attrs.lastModifiedTime().toMillis() > STALE_TEMP_MILLIS) {
+                        // Achtergelaten door een afgebroken proces
+                        deleteQuietly(file);
+                    }
+                }
+            }
+            if (total <= maxBytes) {
+                return;
+            }
+            List<Integer> order = new ArrayList<>(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                order.add(i);
+            }
+            order.sort((a, b) -> attributes.get(a).lastModifiedTime().compareTo(attributes.get(b).lastModifiedTime()));
+            for (int i = 0; i < order.size() && total > maxBytes; i++) {
+                int index = order.get(i);
+                deleteQuietly(entries.get(index));
+                total -= attributes.get(index).size();
+            }
+        } catch (OverlappingFileLockException e) {
+            // Een andere cache-instantie in deze JVM ruimt al op
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_SUFFIX);
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Alleen de LRU-volgorde wordt minder precies
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Volgende opruimronde opnieuw
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package nl.han.ica.icss.cli;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Resultaat van het compileren van één .icss-bestand door de {@link BatchCompiler}.
+ */
+public class CompileResult {
+    public final Path source;
+    public final Path output;
+    public final List<String> errors;
+    public final long nanos;
+    // true: resultaat kwam uit de CompilationCache
+    public final boolean cached;
+
+    public CompileResult(Path source, Path output, List<String> errors, long nanos) {
+        this(source, output, errors, nanos, false);
+    }
+
+    public CompileResult(Path source, Path output, List<String> errors, long nanos, boolean cached) {
+        this.source = source;
+        this.output = output;
+        this.errors = errors;
+        this.nanos = nanos;
+        this.cached = cached;
+    }
+
+    public boolean isSuccess() {
+        return errors.isEmpty();
+    }
+}
@@ -0,0 +1,123 @@
+package nl.han.ica.icss.cli;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Verzamelt de .icss-bestanden die de batch-compiler moet verwerken.
+ * Een argument kan zijn:
+ * - een bestand: wordt altijd meegenomen
+ * - een directory: alle .icss-bestanden daaronder (recursief)
+ * - een glob, bijv. "themes/**&#47;*.icss": gezocht vanaf het langste deel zonder wildcards
+ */
+public class SourceFiles {
+
+    private static final String EXTENSION = ".icss";
+
+    private SourceFiles() { }
+
+    public static List<Path> collect(List<String> arguments) throws IOException {
+        Set<Path> sources = new LinkedHashSet<>();
+        for (String argument : arguments) {
+            if (isGlob(argument)) {
+                sources.addAll(matchGlob(argument));
+                continue;
+            }
+            Path path = Paths.get(argument);
+            if (Files.isDirectory(path)) {
+                sources.addAll(walk(path, file -> file.getFileName().toString().endsWith(EXTENSION)));
+            } else if (Files.isRegularFile(path)) {
+                sources.add(path.toAbsolutePath().normalize());
+            } else {
+                throw new NoSuchFileException(argument);
+            }
+        }
+        return new ArrayList<>(sources);
+    }
+
+    /**
+     * Matcher voor de paden die bij de argumenten horen, op dezelfde manier als collect, maar ook voor
+     * bestanden die pas later ontstaan (watch mode). Verwacht absolute, genormaliseerde paden.
+     */
+    public static PathMatcher matcher(List<String> arguments) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String argument : arguments) {
+            if (isGlob(argument)) {
+                matchers.add(globMatcher(argument));
+                continue;
+            }
+            Path path = Paths.get(argument).toAbsolutePath().normalize();
+            if (Files.isDirectory(path)) {
+                matchers.add(file -> file.startsWith(path) && file.getFileName().toString().endsWith(EXTENSION));
+            } else {
+                matchers.add(path::equals);
+            }
+        }
+        return file -> {
+            for (PathMatcher matcher : matchers) {
+                if (matcher.matches(file)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    static boolean isGlob(String argument) {
+        for (char c : argument.toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == '{') return true;
+        }
+        return false;
+    }
+
+    // Zoekt vanaf de directory vóór de eerste wildcard en matcht het volledige pad tegen de glob
+    private static List<Path> matchGlob(String glob) throws IOException {
+        Path root = globBase(glob);
+        if (!Files.isDirectory(root)) {
+            return new ArrayList<>();
+        }
+        return walk(root, globMatcher(glob)::matches);
+    }
+
+    // De directory vóór de eerste wildcard (absoluut), van waaruit een glob gezocht wordt
+    static Path globBase(String glob) {
+        return globPrefix(glob).toAbsolutePath().normalize();
+    }
+
+    // Matcht absolute paden; een relatieve glob geldt vanaf de werkdirectory
+    private static PathMatcher globMatcher(String glob) {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob.replace('\\', '/'));
+        if (globPrefix(glob).isAbsolute()) {
+            return matcher;
+        }
+        Path relativeTo = Paths.get("").toAbsolutePath();
+        return file -> matcher.matches(relativeTo.relativize(file));
+    }
+
+    private static Path globPrefix(String glob) {
+        String normalized = glob.replace('\\', '/');
+        int wildcard = 0;
+        while (wildcard < normalized.length() && "*?[{".indexOf(normalized.charAt(wildcard)) < 0) {
+            wildcard++;
+        }
+        int slash = normalized.lastIndexOf('/', wildcard);
+        return slash < 0 ? Paths.get("") : Paths.get(normalized.substring(0, slash + 1));
+    }
+
+    private static List<Path> walk(Path directory, Predicate<Path> filter) throws IOException {
+        Path root = directory.toAbsolutePath().normalize();
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(filter)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package nl.han.ica.icss.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bewaakt directories en compileert gewijzigde .icss-bestanden opnieuw (watch mode).
+ * - Gebruikt een {@link WatchService}; directories worden recursief geregistreerd,
+ *   ook als ze later worden aangemaakt.
+ * - Met {@link #forArguments} alleen wat bij de argumenten van de batch hoort (zie SourceFiles.matcher):
+ *   een directory recursief, een glob vanaf zijn basisdirectory, een los bestand alleen via zijn eigen
+ *   directory. Andere .icss-bestanden in die directories worden niet gecompileerd.
+ * - Editors schrijven een bestand vaak in meerdere stappen (tijdelijk bestand, rename, modify).
+ *   Na de eerste melding wordt daarom gewacht tot het debounceMillis stil is; alle meldingen
+ *   in die periode worden samengevoegd en elk gewijzigd bestand wordt één keer gecompileerd.
+ * - Alleen de gewijzigde bestanden worden opnieuw gecompileerd, via dezelfde {@link BatchCompiler}
+ *   (dus ook met zijn cache); de JVM en parser blijven tussen twee wijzigingen warm.
+ * - Bij een OVERFLOW (te veel meldingen) worden alle .icss-bestanden onder de directories gecompileerd.
+ */
+public class WatchCompiler implements Closeable {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 15;
+    private static final String EXTENSION = ".icss";
+
+    private final BatchCompiler compiler;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    // Directories van losse bestanden: nieuwe subdirectories daarin worden niet bewaakt
+    private final Set<WatchKey> flat = new HashSet<>();
+    // Welke bestanden gecompileerd worden (absolute, genormaliseerde paden)
+    private final PathMatcher selected;
+
+    // Alle .icss-bestanden onder de directories, recursief
+    public WatchCompiler(BatchCompiler compiler, List<Path> roots, long debounceMillis) throws IOException {
+        this(compiler, roots, Collections.emptyList(), path -> true, debounceMillis);
+    }
+
+    private WatchCompiler(BatchCompiler compiler, List<Path> roots, List<Path> flatRoots, PathMatcher selected,
+                          long debounceMillis) throws IOException {
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("Debounce mag niet negatief zijn, kreeg: " + debounceMillis);
+        }
+        this.compiler = compiler;
+        this.debounceMillis = debounceMillis;
+        this.selected = selected;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (Path directory : flatRoots) {
+            flat.add(register(directory.toAbsolutePath().normalize()));
+        }
+        for (Path root : roots) {
+            registerAll(root.toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Bewaakt precies de bestanden van de argumenten van de batch: bestanden, directories en globs.
+     */
+    public static WatchCompiler forArguments(BatchCompiler compiler, List<String> arguments, long debounceMillis)
+            throws IOException {
+        Set<Path> roots = new LinkedHashSet<>();
+        Set<Path> flatRoots = new LinkedHashSet<>();
+        for (String argument : arguments) {
+            Path path = SourceFiles.isGlob(argument) ? SourceFiles.globBase(argument)
+                    : Paths.get(argument).toAbsolutePath().normalize();
+            if (Files.isDirectory(path)) {
+                roots.add(path);
+            } else if (path.getParent() != null) {
+                flatRoots.add(path.getParent());
+            }
+        }
+        return new WatchCompiler(compiler, new ArrayList<>(roots), new ArrayList<>(flatRoots),
+                SourceFiles.matcher(arguments), debounceMillis);
+    }
+
+    /**
+     * Wacht op wijzigingen en compileert de gewijzigde bestanden.
+     * @return de resultaten in bestandsvolgorde; leeg als er binnen timeout niets is gewijzigd
+     *         of als alleen andere bestanden (bijv. de gegenereerde .css) zijn gewijzigd
+     */
+    public List<CompileResult> poll(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        WatchKey key = watchService.poll(timeout, unit);
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        Set<Path> changed = new LinkedHashSet<>();
+        boolean overflow = false;
+        while (key != null) {
+            overflow |= collect(key, changed);
+            key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+        if (overflow) {
+            changed.addAll(allSources());
+        }
+        List<Path> sources = new ArrayList<>(changed.size());
+        for (Path path : changed) {
+            // Verwijderd of hernoemd binnen de debounce-periode
+            if (Files.isRegularFile(path)) {
+                sources.add(path);
+            }
+        }
+        Collections.sort(sources);
+        if (sources.size() == 1) {
+            CompileResult result = compiler.compile(sources.get(0));
+            compiler.evictCacheIfGrown();
+            return Collections.singletonList(result);
+        }
+        return sources.isEmpty() ? Collections.emptyList() : compiler.compileAll(sources);
+    }
+
+    /**
+     * Blijft wijzigingen verwerken tot de thread wordt onderbroken of de WatchService wordt gesloten.
+     */
+    public void run(PrintStream out) throws IOException {
+        try {
+            while (true) {
+                List<CompileResult> results = poll(1, TimeUnit.HOURS);
+                for (CompileResult result : results) {
+                    out.printf("%s → %s in %.1f ms%n", result.source,
+                            result.isSuccess() ? result.output.getFileName() : result.errors.size() + " fout(en)",
+                            result.nanos / 1_000_000.0);
+                    for (String error : result.errors) {
+                        out.println("  " + error);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Gestopt via close()
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    // Verwerkt de meldingen van één key; geeft true bij een OVERFLOW
+    private boolean collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path directory = directories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (directory == null || event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && !flat.contains(key)) {
+                    // Nieuwe directory: registreren en wat er al in staat meteen meenemen
+                    registerAll(path);
+                    changed.addAll(sourcesUnder(path));
+                }
+            } else if (path.getFileName().toString().endsWith(EXTENSION) && selected.matches(path)) {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+            flat.remove(key);
+        }
+        return overflow;
+    }
+
+    private void registerAll(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path directory : paths.filter(Files::isDirectory).collect(Collectors.toList())) {
+                // Ook onder een recursieve root: dan telt de directory niet meer als plat
+                flat.remove(register(directory));
+            }
+        }
+    }
+
+    private WatchKey register(Path directory) throws IOException {
+        WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        directories.put(key, directory);
+        return key;
+    }
+
+    private List<Path> allSources() throws IOException {
+        List<Path> sources = new ArrayList<>();
+        for (Path directory : new ArrayList<>(directories.values())) {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(this::isSource).forEach(sources::add);
+            } catch (NoSuchFileException e) {
+                // Inmiddels verwijderd
+            }
+        }
+        return sources;
+    }
+
+    private List<Path> sourcesUnder(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(this::isSource).collect(Collectors.toList());
+        }
+    }
+
+    private boolean isSource(Path path) {
+        return Files.isRegularFile(path) && path.getFileName().toString().endsWith(EXTENSION)
+                && selected.matches(path);
+    }
+}
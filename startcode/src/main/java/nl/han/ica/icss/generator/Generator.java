@@ -7,108 +7,423 @@ import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 public class Generator {
 /** et ISCC-AST om naar CSS
  * - Zet ISCC-AST om naar CSS
- * - Bouwt CSS door de boom te doorlopen en tekst in een StringBuilder te append’en.
- * - Retourneert het eindresultaat als string.
+ * - Bouwt CSS door de boom te doorlopen en tekst direct naar een Appendable (Writer, StringBuilder) te schrijven.
+ * - generate(AST) retourneert het eindresultaat als string, de andere varianten streamen
+ *   zonder tussenliggende string van het hele document.
+ * - Met setMinify(true) komt er geen overbodige witruimte in de uitvoer, worden kleuren waar mogelijk
+ *   verkort (#ffffff → #fff), vervalt de laatste puntkomma van elk blok en worden lege regels weggelaten.
+ * - Met setParallel(true) wordt de body van de stylesheet in stukken van RULES_PER_CHUNK stylerules verdeeld.
+ *   Elk stuk wordt op de common fork-join pool in een eigen buffer geschreven; de buffers worden in
+ *   bronvolgorde achter elkaar gezet (naar een kanaal met een gathering write). Een stylerule op het
+ *   hoogste niveau begint altijd zonder inspringing, dus de uitvoer is byte voor byte gelijk aan sequentieel.
+ *   Er wordt per venster van WINDOW_CHUNKS stukken gerenderd en geschreven, dus ook parallel blijft het
+ *   geheugengebruik begrensd: hooguit twee vensters (het ene wordt geschreven, het volgende gerenderd),
+ *   in plaats van het hele document zoals bij generate(AST).
  */
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int RULES_PER_CHUNK = 512;
+    // Stukken per venster: genoeg om alle workers bezig te houden
+    private static final int WINDOW_CHUNKS = Math.max(2, 2 * ForkJoinPool.getCommonPoolParallelism());
+
+    private boolean minify = false;
+    private boolean parallel = false;
+
+    public boolean isMinify() {
+        return minify;
+    }
+
+    public void setMinify(boolean minify) {
+        this.minify = minify;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
     public String generate(AST ast) {
-        if (ast == null || ast.root == null) {
-            return "";
-        }
         StringBuilder builder = new StringBuilder();
-        walk(ast.root, builder, 0);
+        try {
+            generate(ast, builder);
+        } catch (IOException e) {
+            // Kan niet: StringBuilder gooit geen IOException
+            throw new UncheckedIOException(e);
+        }
         return builder.toString();
     }
-// Loopt door de boom heen
-    private void walk(ASTNode astnode, StringBuilder builder, int indent) {
-        if (astnode instanceof Stylesheet) {
-            Stylesheet stylesheet = (Stylesheet) astnode;
-            for (ASTNode child : stylesheet.getChildren()) {
-                walk(child, builder, 0);
-            }
+
+    public void generate(AST ast, Appendable out) throws IOException {
+        if (ast == null || ast.root == null) {
             return;
         }
-        if (astnode instanceof Stylerule) {
-            Stylerule stylerule = (Stylerule) astnode;
-            indent(builder, indent).append(joinSelectors(stylerule)).append(" {\n");
-
-            for (ASTNode child : stylerule.getChildren()) {
-                if (child instanceof Declaration) {
-                    Declaration declaration = (Declaration) child;
-                    appendDeclaration(declaration, builder, indent + 1);
+        if (isChunked(ast)) {
+            renderInWindows(ast.root.body, false, (chunks, encoded, count) -> {
+                for (int i = 0; i < count; i++) {
+                    out.append(chunks[i]);
                 }
-            }
-            indent(builder, indent).append("}\n\n");
+            });
             return;
         }
-        for (ASTNode child : astnode.getChildren()) {
-            walk(child, builder, indent);
+        try {
+            ast.root.accept(new CssWriter(), out);
+        } catch (UncheckedIOException e) {
+            // De visitor kan geen checked exceptions gooien; hier weer uitpakken
+            throw e.getCause();
         }
     }
 
-    private void appendDeclaration(Declaration declaration, StringBuilder builder, int indent) {
-        if (!(declaration.expression instanceof Literal)) {
-            throw new IllegalStateException("Generator verwacht Literal-expressies (run Evaluator eerst).");
+    // Schrijft UTF-8 gebufferd naar het kanaal; het kanaal zelf blijft open
+    public void generate(AST ast, WritableByteChannel channel) throws IOException {
+        if (isChunked(ast)) {
+            // De stukken worden al op de workers naar UTF-8 omgezet
+            renderInWindows(ast.root.body, true, (chunks, encoded, count) -> write(channel, encoded, count));
+            return;
         }
+        Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE));
+        generate(ast, writer);
+        writer.flush();
+    }
+
+    private boolean isChunked(AST ast) {
+        return parallel && ast != null && ast.root != null && ast.root.body.size() > RULES_PER_CHUNK;
+    }
 
-        String property = declaration.property.name;
-        String value = literalToString((Literal) declaration.expression);
-        indent(builder, indent).append(property).append(": ").append(value).append(";\n");
+    // Krijgt de stukken van één venster in bronvolgorde; alleen de eerste count plaatsen zijn gevuld
+    private interface WindowSink {
+        void write(StringBuilder[] chunks, ByteBuffer[] encoded, int count) throws IOException;
     }
 
-    private String joinSelectors(Stylerule stylerule) {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < stylerule.selectors.size(); i++) {
-            if (i > 0) stringBuilder.append(", ");
-            stringBuilder.append(selectorToString(stylerule.selectors.get(i)));
+    // Rendert de body per venster van WINDOW_CHUNKS stukken op de fork-join pool. Terwijl een venster
+    // wordt weggeschreven, wordt het volgende al gerenderd; meer dan twee vensters bestaan er nooit tegelijk.
+    private void renderInWindows(List<ASTNode> body, boolean encode, WindowSink sink) throws IOException {
+        int chunkCount = (body.size() + RULES_PER_CHUNK - 1) / RULES_PER_CHUNK;
+        ChunkRender next = window(body, 0, chunkCount, encode);
+        ForkJoinPool.commonPool().execute(next);
+        try {
+            for (int first = 0; first < chunkCount; first += WINDOW_CHUNKS) {
+                ChunkRender current = next;
+                current.join();
+                next = null;
+                if (first + WINDOW_CHUNKS < chunkCount) {
+                    next = window(body, first + WINDOW_CHUNKS, chunkCount, encode);
+                    ForkJoinPool.commonPool().execute(next);
+                }
+                sink.write(current.chunks, current.encoded, current.chunks.length);
+            }
+        } finally {
+            if (next != null) {
+                // Schrijven mislukt: het volgende venster is niet meer nodig
+                next.cancel(false);
+            }
         }
-        return stringBuilder.toString();
     }
 
-    private String selectorToString(Selector selector) {
-        if (selector instanceof IdSelector) {
-            IdSelector idSelector = (IdSelector) selector;
-            return "#" + idSelector.id;
+    private ChunkRender window(List<ASTNode> body, int first, int chunkCount, boolean encode) {
+        int count = Math.min(WINDOW_CHUNKS, chunkCount - first);
+        return new ChunkRender(this, body, first, new StringBuilder[count], encode ? new ByteBuffer[count] : null,
+                0, count);
+    }
+
+    private static void write(WritableByteChannel channel, ByteBuffer[] buffers, int count) throws IOException {
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            // Een gathering write kan minder schrijven dan gevraagd: doorgaan vanaf de eerste niet-lege buffer
+            int first = 0;
+            while (first < count) {
+                gathering.write(buffers, first, count - first);
+                while (first < count && !buffers[first].hasRemaining()) {
+                    first++;
+                }
+            }
+            return;
         }
-        if (selector instanceof ClassSelector) {
-            ClassSelector classSelector = (ClassSelector) selector;
-            return "." + classSelector.cls;
+        for (int i = 0; i < count; i++) {
+            while (buffers[i].hasRemaining()) {
+                channel.write(buffers[i]);
+            }
+        }
+    }
+
+    /**
+     * Rendert de stukken from..to van een venster, gesplitst tot één stuk per taak.
+     * Plaats i in chunks (en encoded) is stuk first + i van de body.
+     */
+    @SuppressWarnings("serial") // Fork-join taken worden nooit geserialiseerd
+    private static class ChunkRender extends RecursiveAction {
+        private final Generator generator;
+        private final List<ASTNode> body;
+        private final int first;
+        private final StringBuilder[] chunks;
+        private final ByteBuffer[] encoded;
+        private final int from;
+        private final int to;
+
+        ChunkRender(Generator generator, List<ASTNode> body, int first, StringBuilder[] chunks, ByteBuffer[] encoded,
+                    int from, int to) {
+            this.generator = generator;
+            this.body = body;
+            this.first = first;
+            this.chunks = chunks;
+            this.encoded = encoded;
+            this.from = from;
+            this.to = to;
         }
-        if (selector instanceof TagSelector) {
-            TagSelector tagSelector = (TagSelector) selector;
-            return tagSelector.tag;
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                CssWriter writer = generator.new CssWriter();
+                StringBuilder chunk = new StringBuilder();
+                int end = Math.min(body.size(), (first + from + 1) * RULES_PER_CHUNK);
+                for (int i = (first + from) * RULES_PER_CHUNK; i < end; i++) {
+                    body.get(i).accept(writer, chunk);
+                }
+                chunks[from] = chunk;
+                if (encoded != null) {
+                    encoded[from] = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chunk));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkRender(generator, body, first, chunks, encoded, from, middle),
+                    new ChunkRender(generator, body, first, chunks, encoded, middle, to));
         }
-        return selector.toString();
     }
 
-    private String literalToString(Literal literal) {
-        if (literal instanceof PixelLiteral) {
-            PixelLiteral pixelLiteral = (PixelLiteral) literal;
-            return pixelLiteral.value + "px";
+    /**
+     * Loopt door de boom heen en schrijft CSS naar de Appendable (context).
+     * IOExceptions worden als UncheckedIOException doorgegeven aan generate().
+     */
+    private class CssWriter implements ASTVisitor<Void, Appendable> {
+        private int indent = 0;
+
+        @Override
+        public Void visitNode(ASTNode astnode, Appendable builder) {
+            for (int i = 0; i < astnode.getChildCount(); i++) {
+                astnode.getChild(i).accept(this, builder);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitStylesheet(Stylesheet stylesheet, Appendable builder) {
+            indent = 0;
+            return visitNode(stylesheet, builder);
+        }
+
+        // Variabelen en if's komen niet in de CSS; na de Evaluator staan ze ook niet meer in de boom,
+        // maar Generate kan ook direct na check (onge-evalueerde boom) gedraaid worden
+        @Override
+        public Void visitVariableAssignment(VariableAssignment variableAssignment, Appendable builder) {
+            return null;
+        }
+
+        @Override
+        public Void visitIfClause(IfClause ifClause, Appendable builder) {
+            return null;
+        }
+
+        @Override
+        public Void visitStylerule(Stylerule stylerule, Appendable builder) {
+            if (minify) {
+                return writeMinified(stylerule, builder);
+            }
+            try {
+                indent(builder, indent);
+                for (int i = 0; i < stylerule.selectors.size(); i++) {
+                    if (i > 0) builder.append(", ");
+                    stylerule.selectors.get(i).accept(this, builder);
+                }
+                builder.append(" {\n");
+                indent++;
+                for (int i = 0; i < stylerule.body.size(); i++) {
+                    ASTNode child = stylerule.body.get(i);
+                    if (child instanceof Declaration) {
+                        child.accept(this, builder);
+                    }
+                }
+                indent--;
+                indent(builder, indent).append("}\n\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
         }
-        if (literal instanceof PercentageLiteral) {
-            PercentageLiteral percentageLiteral = (PercentageLiteral) literal;
-            return percentageLiteral.value + "%";
+
+        // selector,selector{property:waarde;property:waarde}
+        private Void writeMinified(Stylerule stylerule, Appendable builder) {
+            int declarations = 0;
+            for (int i = 0; i < stylerule.body.size(); i++) {
+                if (stylerule.body.get(i) instanceof Declaration) {
+                    declarations++;
+                }
+            }
+            if (declarations == 0) {
+                return null;
+            }
+            try {
+                for (int i = 0; i < stylerule.selectors.size(); i++) {
+                    if (i > 0) builder.append(',');
+                    stylerule.selectors.get(i).accept(this, builder);
+                }
+                builder.append('{');
+                for (int i = 0; i < stylerule.body.size(); i++) {
+                    ASTNode child = stylerule.body.get(i);
+                    if (child instanceof Declaration) {
+                        child.accept(this, builder);
+                        if (--declarations > 0) builder.append(';');
+                    }
+                }
+                builder.append('}');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
         }
-        if (literal instanceof ColorLiteral) {
-            ColorLiteral colorLiteral = (ColorLiteral) literal;
-            return colorLiteral.value;
+
+        @Override
+        public Void visitDeclaration(Declaration declaration, Appendable builder) {
+            if (!(declaration.expression instanceof Literal)) {
+                throw new IllegalStateException("Generator verwacht Literal-expressies (run Evaluator eerst).");
+            }
+            if (minify) {
+                write(builder, declaration.property.name, ":");
+                return declaration.expression.accept(this, builder);
+            }
+            try {
+                indent(builder, indent).append(declaration.property.name).append(": ");
+                declaration.expression.accept(this, builder);
+                builder.append(";\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+
+        // Selectors
+        @Override
+        public Void visitIdSelector(IdSelector idSelector, Appendable builder) {
+            return write(builder, '#', idSelector.id);
+        }
+
+        @Override
+        public Void visitClassSelector(ClassSelector classSelector, Appendable builder) {
+            return write(builder, '.', classSelector.cls);
+        }
+
+        @Override
+        public Void visitTagSelector(TagSelector tagSelector, Appendable builder) {
+            return write(builder, tagSelector.tag);
         }
-        if (literal instanceof ScalarLiteral) {
-            ScalarLiteral scalarLiteral = (ScalarLiteral) literal;
-            return Integer.toString(scalarLiteral.value);
+
+        @Override
+        public Void visitSelector(Selector selector, Appendable builder) {
+            return write(builder, selector.toString());
         }
-        if (literal instanceof BoolLiteral) {
-            BoolLiteral boolLiteral = (BoolLiteral) literal;
-            return boolLiteral.value ? "true" : "false";
+
+        // Literals
+        @Override
+        public Void visitPixelLiteral(PixelLiteral pixelLiteral, Appendable builder) {
+            return write(builder, Integer.toString(pixelLiteral.value), "px");
         }
-        return literal.toString();
+
+        @Override
+        public Void visitPercentageLiteral(PercentageLiteral percentageLiteral, Appendable builder) {
+            return write(builder, Integer.toString(percentageLiteral.value), "%");
+        }
+
+        @Override
+        public Void visitColorLiteral(ColorLiteral colorLiteral, Appendable builder) {
+            String color = colorLiteral.value;
+            if (minify && isShortColor(color)) {
+                // #aabbcc → #abc, zonder tussenliggende string
+                try {
+                    builder.append('#').append(color.charAt(1)).append(color.charAt(3)).append(color.charAt(5));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            }
+            return write(builder, color);
+        }
+
+        @Override
+        public Void visitScalarLiteral(ScalarLiteral scalarLiteral, Appendable builder) {
+            return write(builder, Integer.toString(scalarLiteral.value));
+        }
+
+        @Override
+        public Void visitBoolLiteral(BoolLiteral boolLiteral, Appendable builder) {
+            return write(builder, boolLiteral.value ? "true" : "false");
+        }
+
+        @Override
+        public Void visitLiteral(Literal literal, Appendable builder) {
+            return write(builder, literal.toString());
+        }
+
+        private Void write(Appendable builder, char prefix, String text) {
+            try {
+                builder.append(prefix).append(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+
+        private Void write(Appendable builder, String text) {
+            try {
+                builder.append(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+
+        private Void write(Appendable builder, String text, String suffix) {
+            try {
+                builder.append(text).append(suffix);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+    }
+
+    // #aabbcc kan als #abc geschreven worden
+    private static boolean isShortColor(String color) {
+        return color.length() == 7 && color.charAt(0) == '#'
+                && sameDigit(color.charAt(1), color.charAt(2))
+                && sameDigit(color.charAt(3), color.charAt(4))
+                && sameDigit(color.charAt(5), color.charAt(6));
+    }
+
+    private static boolean sameDigit(char a, char b) {
+        return Character.toLowerCase(a) == Character.toLowerCase(b);
     }
 
-    private StringBuilder indent(StringBuilder builder, int indent) {
+    private Appendable indent(Appendable builder, int indent) throws IOException {
         for (int i = 0; i < indent; i++) {
             builder.append("  ");
         }
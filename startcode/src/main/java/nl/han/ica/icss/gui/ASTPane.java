@@ -6,6 +6,7 @@ import javafx.scene.control.TreeCell;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.layout.BorderPane;
+import nl.han.ica.datastructures.HANStack;
 import nl.han.ica.icss.ast.AST;
 import nl.han.ica.icss.ast.ASTNode;
 
@@ -52,12 +53,30 @@ public class ASTPane extends BorderPane {
     }
     private TreeItem<ASTNode> astNodeToTreeItem(ASTNode astNode) {
 
-        TreeItem<ASTNode> tvNode = new TreeItem<ASTNode>(astNode);
-        tvNode.setExpanded(true);
+        TreeItem<ASTNode> root = treeItem(astNode);
 
-        for(ASTNode child : astNode.getChildren()) {
-            tvNode.getChildren().add(astNodeToTreeItem(child));
+        //Explicit stack instead of recursion, so deep trees do not overflow the call stack;
+        //children are pushed in reverse and therefore added in their own order
+        HANStack<ASTNode> nodes = new HANStack<>();
+        HANStack<TreeItem<ASTNode>> parents = new HANStack<>();
+        for(int i = astNode.getChildCount() - 1; i >= 0; i--) {
+            nodes.push(astNode.getChild(i));
+            parents.push(root);
+        }
+        while(!nodes.isEmpty()) {
+            ASTNode node = nodes.pop();
+            TreeItem<ASTNode> tvNode = treeItem(node);
+            parents.pop().getChildren().add(tvNode);
+            for(int i = node.getChildCount() - 1; i >= 0; i--) {
+                nodes.push(node.getChild(i));
+                parents.push(tvNode);
+            }
         }
+        return root;
+    }
+    private TreeItem<ASTNode> treeItem(ASTNode astNode) {
+        TreeItem<ASTNode> tvNode = new TreeItem<ASTNode>(astNode);
+        tvNode.setExpanded(true);
         return tvNode;
     }
 }
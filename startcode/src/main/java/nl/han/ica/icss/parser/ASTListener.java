@@ -6,23 +6,33 @@ import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.parser.ICSSParser;
 import nl.han.ica.icss.ast.operations.AddOperation;
 import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.NaryOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
 
 
 /**
- * Bouwt een ICSS-AST vanuit de ANTLR parse tree.
+ * Bouwt een ICSS-AST vanuit de ANTLR parse tree, of direct tijdens het parsen als parse listener.
+ * Daarom worden alleen token-teksten gebruikt (ctx.getStart()), nooit ctx.getText(): zonder parse tree
+ * heeft een context geen kinderen.
  * <p>
  * Architectuur:
  * - currentContainer (stack): houdt de huidige AST-"container" vast (Stylesheet, Stylerule, If/Else, etc.)
- * - exprStack (stack): bouwt expressies bottom-up (literals, var refs, +, -, *)
+ * - exprStack (stack): bouwt expressies bottom-up (literals, var refs, +, -, *); ketens van drie of meer
+ *   termen worden platgeslagen tot één NaryOperation (zie chain)
  * - ifStack (stack): koppelt de conditie en (else-)body aan de juiste IfClause, ook bij nesting
  * <p>
  * Belangrijk:
  * - In exitCondition() koppelen we de conditie altijd aan ifStack.peek() (geen globale state).
- * - In exitDeclaration()/exitVariableAssignment() verwachten we dat exprStack een RHS bevat zo niet → duidelijke foutmelding.
+ * - In exitDeclaration()/exitVariableAssignment()/exitCondition() verwachten we dat exprStack een expressie bevat;
+ *   zo niet (syntaxfout, error recovery) → foutmelding op de knoop, zonder exception, zodat de parser zijn
+ *   eigen syntaxfout kan rapporteren.
+ * - Hetzelfde geldt voor operaties met te weinig operanden en voor literals en selectors waarvan het
+ *   starttoken niet het verwachte token is: bij parsen zonder parse tree vuren die exits ook na error recovery.
  */
 
 public class ASTListener extends ICSSBaseListener {
@@ -66,16 +76,18 @@ public class ASTListener extends ICSSBaseListener {
         VariableAssignment variableAssignment = (VariableAssignment) currentContainer.pop();
         if (exprStack.isEmpty()) {
             variableAssignment.setError("RHS ontbreekt voor variableAssignment (syntaxfout eerder in de regel?).");
+        } else {
+            variableAssignment.expression = exprStack.pop();
         }
-        variableAssignment.expression = exprStack.pop();
         currentContainer.peek().addChild(variableAssignment);
     }
 
     @Override
     public void exitVariableName(ICSSParser.VariableNameContext ctx) {
         ASTNode astNode = currentContainer.peek();
-        if (astNode instanceof VariableAssignment) {
-            ((VariableAssignment) astNode).name = new VariableReference(ctx.getText());
+        // Alleen de naam links van := ; een variableName in de expressie (varRef) is een verwijzing
+        if (astNode instanceof VariableAssignment && ((VariableAssignment) astNode).name == null) {
+            ((VariableAssignment) astNode).name = new VariableReference(ctx.getStart().getText());
         }
     }
 //Stylerule
@@ -90,38 +102,31 @@ public class ASTListener extends ICSSBaseListener {
         currentContainer.peek().addChild(stylerule);
     }
 //Selectors
+    // Selectors worden pas bij exit gemaakt: bij parsen zonder parse tree vuurt ANTLR voor
+    // gelabelde alternatieven (#tagSelector etc.) alleen het exit-event.
     //Tagselector
-    @Override
-    public void enterTagSelector(ICSSParser.TagSelectorContext ctx) {
-        currentContainer.push(new TagSelector(ctx.getText()));
-    }
-
     @Override
     public void exitTagSelector(ICSSParser.TagSelectorContext ctx) {
-        TagSelector tagSelector = (TagSelector) currentContainer.pop();
-        currentContainer.peek().addChild(tagSelector);
+        String text = tokenText(ctx, ICSSParser.LOWER_IDENT);
+        if (text != null) {
+            currentContainer.peek().addChild(new TagSelector(text));
+        }
     }
 // Class selector
-    @Override
-    public void enterClassSelector(ICSSParser.ClassSelectorContext ctx) {
-        currentContainer.push(new ClassSelector(ctx.getText().substring(1)));
-    }
-
     @Override
     public void exitClassSelector(ICSSParser.ClassSelectorContext ctx) {
-        ClassSelector classSelector = (ClassSelector) currentContainer.pop();
-        currentContainer.peek().addChild(classSelector);
+        String text = tokenText(ctx, ICSSParser.CLASS_IDENT);
+        if (text != null) {
+            currentContainer.peek().addChild(new ClassSelector(text.substring(1)));
+        }
     }
 // Id selector
-    @Override
-    public void enterIdSelector(ICSSParser.IdSelectorContext ctx) {
-        currentContainer.push(new IdSelector(ctx.getText().substring(1)));
-    }
-
     @Override
     public void exitIdSelector(ICSSParser.IdSelectorContext ctx) {
-        IdSelector idSelector = (IdSelector) currentContainer.pop();
-        currentContainer.peek().addChild(idSelector);
+        String text = tokenText(ctx, ICSSParser.ID_IDENT);
+        if (text != null) {
+            currentContainer.peek().addChild(new IdSelector(text.substring(1)));
+        }
     }
 // Declaration
     @Override
@@ -135,33 +140,41 @@ public class ASTListener extends ICSSBaseListener {
         Declaration declaration = (Declaration) currentContainer.pop();
         if (exprStack.isEmpty()) {
             declaration.setError("Expression ontbreekt in declaration op regel " + ctx.getStart().getLine());
+        } else {
+            declaration.expression = exprStack.pop();
         }
-        declaration.expression = exprStack.pop();
         currentContainer.peek().addChild(declaration);
     }
 // Property
     @Override
     public void exitProperty(ICSSParser.PropertyContext ctx) {
         Declaration declaration = (Declaration) currentContainer.peek();
-        declaration.property = new PropertyName(ctx.getText());
+        declaration.property = new PropertyName(ctx.getStart().getText());
     }
 //Literals
     // PixelLiteral
     @Override
     public void exitPixelLiteral(ICSSParser.PixelLiteralContext ctx) {
-        String text = ctx.getText();
-        int value = Integer.parseInt(text.substring(0, text.length() - 2));
-        exprStack.push(new PixelLiteral(value));
+        String text = tokenText(ctx, ICSSParser.PIXELSIZE);
+        if (text != null) {
+            exprStack.push(new PixelLiteral(Integer.parseInt(text.substring(0, text.length() - 2))));
+        }
     }
 // ScarletLiteral
     @Override
     public void exitScalarLiteral(ICSSParser.ScalarLiteralContext ctx) {
-        exprStack.push(new ScalarLiteral(Integer.parseInt(ctx.getText())));
+        String text = tokenText(ctx, ICSSParser.SCALAR);
+        if (text != null) {
+            exprStack.push(new ScalarLiteral(Integer.parseInt(text)));
+        }
     }
 //ExitLiteral
     @Override
     public void exitColorLiteral(ICSSParser.ColorLiteralContext ctx) {
-        exprStack.push(new ColorLiteral(ctx.getText()));
+        String text = tokenText(ctx, ICSSParser.COLOR);
+        if (text != null) {
+            exprStack.push(new ColorLiteral(text));
+        }
     }
 // Bool
     // true
@@ -177,44 +190,79 @@ public class ASTListener extends ICSSBaseListener {
     // Percentage literal
     @Override
     public void exitPercentageLiteral(ICSSParser.PercentageLiteralContext ctx) {
-        String text = ctx.getText();
-        int value = Integer.parseInt(text.substring(0, text.length() - 1));
-        exprStack.push(new PercentageLiteral(value));
+        String text = tokenText(ctx, ICSSParser.PERCENTAGE);
+        if (text != null) {
+            exprStack.push(new PercentageLiteral(Integer.parseInt(text.substring(0, text.length() - 1))));
+        }
     }
 
     @Override
     public void exitVarRef(ICSSParser.VarRefContext ctx) {
-        exprStack.push(new VariableReference(ctx.getText()));
+        exprStack.push(new VariableReference(ctx.getStart().getText()));
     }
 // Plus
     @Override
     public void exitAddOperation(ICSSParser.AddOperationContext ctx) {
+        if (missingOperands(ctx)) return;
         Expression right = exprStack.pop();
-        Expression left = exprStack.pop();
-        AddOperation op = new AddOperation();
-        op.lhs = left;
-        op.rhs = right;
-        exprStack.push(op);
+        exprStack.push(chain(exprStack.pop(), NaryOperation.Operator.PLUS, right));
     }
 // Min
     @Override
     public void exitSubOperation(ICSSParser.SubOperationContext ctx) {
+        if (missingOperands(ctx)) return;
         Expression right = exprStack.pop();
-        Expression left = exprStack.pop();
-        SubtractOperation op = new SubtractOperation();
-        op.lhs = left;
-        op.rhs = right;
-        exprStack.push(op);
+        exprStack.push(chain(exprStack.pop(), NaryOperation.Operator.MIN, right));
     }
 // Keer
     @Override
     public void exitMulOperation(ICSSParser.MulOperationContext ctx) {
+        if (missingOperands(ctx)) return;
         Expression right = exprStack.pop();
-        Expression left = exprStack.pop();
-        MultiplyOperation op = new MultiplyOperation();
+        exprStack.push(chain(exprStack.pop(), NaryOperation.Operator.MUL, right));
+    }
+
+    // Na error recovery kan een operand ontbreken: fout op de huidige knoop in plaats van een lege stack poppen
+    private boolean missingOperands(ParserRuleContext ctx) {
+        if (exprStack.size() >= 2) {
+            return false;
+        }
+        currentContainer.peek().setError("Operand ontbreekt in operatie op regel " + ctx.getStart().getLine());
+        return true;
+    }
+
+    // Tekst van het starttoken, of null met een fout op de huidige knoop als dat niet het verwachte token is
+    private String tokenText(ParserRuleContext ctx, int tokenType) {
+        Token start = ctx.getStart();
+        if (start.getType() == tokenType) {
+            return start.getText();
+        }
+        currentContainer.peek().setError("Onverwacht '" + start.getText() + "' op regel " + start.getLine());
+        return null;
+    }
+
+    // De grammar is links-recursief: bij a + b + c komt eerst a + b binnen en daarna (a + b) + c.
+    // Twee termen blijven een binaire operatie; vanaf de derde term wordt het één platte NaryOperation
+    // waar elke volgende term achteraan bijkomt, in plaats van een extra niveau per term.
+    private Expression chain(Expression left, NaryOperation.Operator operator, Expression right) {
+        boolean product = operator == NaryOperation.Operator.MUL;
+        if (left instanceof NaryOperation && ((NaryOperation) left).isProduct() == product) {
+            return ((NaryOperation) left).append(operator, right);
+        }
+        if (product ? left instanceof MultiplyOperation
+                : left instanceof AddOperation || left instanceof SubtractOperation) {
+            Operation pair = (Operation) left;
+            NaryOperation.Operator first = pair instanceof AddOperation ? NaryOperation.Operator.PLUS
+                    : pair instanceof SubtractOperation ? NaryOperation.Operator.MIN
+                    : NaryOperation.Operator.MUL;
+            return new NaryOperation(pair.lhs).append(first, pair.rhs).append(operator, right);
+        }
+        Operation op = operator == NaryOperation.Operator.PLUS ? new AddOperation()
+                : operator == NaryOperation.Operator.MIN ? new SubtractOperation()
+                : new MultiplyOperation();
         op.lhs = left;
         op.rhs = right;
-        exprStack.push(op);
+        return op;
     }
 // If statement
     @Override
@@ -247,12 +295,12 @@ public class ASTListener extends ICSSBaseListener {
 
     @Override
     public void exitCondition(ICSSParser.ConditionContext ctx) {
+        IfClause owner = ifStack.peek();
         if (exprStack.isEmpty()) {
-            throw new RuntimeException("Condition expression empty" + ctx.getStart().getLine());
+            owner.setError("Conditie ontbreekt in if-clause op regel " + ctx.getStart().getLine());
+        } else {
+            owner.conditionalExpression = exprStack.pop();
         }
-
-        IfClause owner = ifStack.peek();
-        owner.conditionalExpression = exprStack.pop();
     }
 
 }
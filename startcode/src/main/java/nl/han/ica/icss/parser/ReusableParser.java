@@ -0,0 +1,312 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.PipelineStats;
+import nl.han.ica.icss.ast.AST;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.IterativeParseTreeWalker;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Herbruikbare lexer + parser voor ICSS.
+ * - Lexer, token stream en parser worden één keer aangemaakt en per invoer gereset
+ *   (setInputStream / setTokenSource / setTokenStream) in plaats van telkens opnieuw gebouwd.
+ * - De ATN/DFA-caches van de gegenereerde lexer en parser zijn static en dus gedeeld:
+ *   wat één compilatie leert, maakt alle volgende compilaties (ook op andere threads) sneller.
+ * - Een instantie is niet thread-safe; gebruik {@link #forCurrentThread()} om per worker-thread
+ *   één instantie te hergebruiken.
+ * - Parse standaard eerst met SLL-predictie zonder foutrapportage en valt alleen bij een fout
+ *   terug op volledige LL met de gewone error listener (lexer en parser lopen dan opnieuw).
+ * - Zonder parse tree (buildParseTree = false) hangt de ASTListener als parse listener aan de parser
+ *   en bouwt de AST tijdens het parsen. De SLL-pass leest de tokens dan ook ongebufferd, zodat
+ *   alleen de ICSS-AST in het geheugen groeit. De LL-pass na een mislukte SLL-pass bouwt wel altijd een
+ *   parse tree: bij error recovery krijgt een parse listener half afgemaakte contexten te zien.
+ * - De gegenereerde parser is recursive descent: heel diep geneste invoer (duizenden if's) past niet op
+ *   een gewone call stack. Na een StackOverflowError wordt daarom opnieuw geparst op een eigen thread
+ *   met een stack van DEEP_STACK_SIZE; gewone invoer merkt daar niets van. De syntaxfouten worden per poging
+ *   gebufferd en alleen die van de poging die afloopt gaan naar de error listener, zodat niets dubbel wordt gemeld.
+ * - Met een PipelineStats loopt precies hetzelfde pad als zonder; alleen gaan de tokens door een
+ *   TimedTokenSource. LEX is de tijd (wandklok en CPU) in de lexer, PARSE de rest van de parse-pass
+ *   (inclusief het bouwen van de AST als dat tijdens het parsen gebeurt) en BUILD_AST alleen het aflopen van een parse tree. Een
+ *   SLL-pass die terugvalt op LL telt mee in de tijden; welk pad gelopen is staat in getParsePath().
+ */
+public class ReusableParser {
+
+    private static final ThreadLocal<ReusableParser> PER_THREAD = ThreadLocal.withInitial(ReusableParser::new);
+    private static final long DEEP_STACK_SIZE = 512L * 1024 * 1024;
+
+    // Parse-statistieken, gedeeld door alle instanties
+    private static final LongAdder sllParses = new LongAdder();
+    private static final LongAdder llFallbacks = new LongAdder();
+
+    // Een lexerfout in de SLL-pass breekt die pass af; de LL-pass rapporteert de fout daarna wel
+    private static final ANTLRErrorListener BAIL_ON_LEXER_ERROR = new BaseErrorListener() {
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            throw new ParseCancellationException(msg, e);
+        }
+    };
+
+    private final CharStream empty = CharStreams.fromString("");
+    private final ICSSLexer lexer;
+    private final CommonTokenStream tokens;
+    private final ICSSParser parser;
+
+    public ReusableParser() {
+        lexer = new ICSSLexer(empty);
+        lexer.removeErrorListeners();
+        tokens = new CommonTokenStream(lexer);
+        parser = new ICSSParser(tokens);
+        parser.removeErrorListeners();
+    }
+
+    public static ReusableParser forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    public static long getSllParseCount() {
+        return sllParses.sum();
+    }
+
+    public static long getLlFallbackCount() {
+        return llFallbacks.sum();
+    }
+
+    /**
+     * Parset de invoer en bouwt de AST.
+     * @param errorListener krijgt de lexer- en parserfouten (alleen uit de LL-pass)
+     * @param twoStage true: eerst SLL, bij falen LL; false: direct volledige LL
+     * @param buildParseTree true: eerst een ANTLR parse tree, daarna de ASTListener erover;
+     *                       false: de AST wordt tijdens het parsen gebouwd
+     */
+    public AST parse(String input, ANTLRErrorListener errorListener, boolean twoStage, boolean buildParseTree) {
+        return parse(input, errorListener, twoStage, buildParseTree, null);
+    }
+
+    /**
+     * Als {@link #parse(String, ANTLRErrorListener, boolean, boolean)}, en meet de stappen LEX, PARSE en
+     * BUILD_AST en het aantal tokens in stats (null: niet meten).
+     */
+    public AST parse(String input, ANTLRErrorListener errorListener, boolean twoStage, boolean buildParseTree,
+                     PipelineStats stats) {
+        ErrorBuffer errors = new ErrorBuffer();
+        try {
+            return parseHere(input, errors, twoStage, buildParseTree, stats);
+        } catch (StackOverflowError e) {
+            // Fouten en metingen van de afgebroken poging vervallen; de nieuwe poging doet alles opnieuw
+            errors = new ErrorBuffer();
+            if (stats != null) {
+                stats.reset();
+            }
+            return parseOnDeepStack(input, errors, twoStage, buildParseTree, stats);
+        } finally {
+            errors.forwardTo(errorListener);
+        }
+    }
+
+    private static AST parseOnDeepStack(String input, ANTLRErrorListener errorListener, boolean twoStage,
+                                        boolean buildParseTree, PipelineStats stats) {
+        AST[] result = new AST[1];
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                result[0] = forCurrentThread().parseHere(input, errorListener, twoStage, buildParseTree, stats);
+            } catch (RuntimeException | Error e) {
+                failure[0] = e;
+            }
+        }, "icss-deep-parse", DEEP_STACK_SIZE);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParseCancellationException("Onderbroken tijdens het parsen", e);
+        }
+        if (failure[0] instanceof RuntimeException) {
+            throw (RuntimeException) failure[0];
+        }
+        if (failure[0] != null) {
+            throw (Error) failure[0];
+        }
+        return result[0];
+    }
+
+    private AST parseHere(String input, ANTLRErrorListener errorListener, boolean twoStage, boolean buildParseTree,
+                          PipelineStats stats) {
+        CharStream chars = CharStreams.fromString(input);
+        try {
+            if (twoStage) {
+                try {
+                    AST ast = parse(chars, PredictionMode.SLL, new BailErrorStrategy(), BAIL_ON_LEXER_ERROR,
+                            null, buildParseTree, !buildParseTree, stats);
+                    sllParses.increment();
+                    setParsePath(stats, "SLL", buildParseTree);
+                    return ast;
+                } catch (ParseCancellationException e) {
+                    llFallbacks.increment();
+                }
+            }
+            AST ast = parse(chars, PredictionMode.LL, new DefaultErrorStrategy(), errorListener,
+                    errorListener, buildParseTree || twoStage, false, stats);
+            setParsePath(stats, twoStage ? "SLL, terugval op LL" : "LL", buildParseTree || twoStage);
+            return ast;
+        } finally {
+            // Laat geen invoer, tokens of parse tree achter in de (thread-lokale) instantie
+            reset(empty);
+        }
+    }
+
+    private AST parse(CharStream chars, PredictionMode mode, ANTLRErrorStrategy errorStrategy,
+                      ANTLRErrorListener lexerListener, ANTLRErrorListener parserListener,
+                      boolean buildParseTree, boolean unbuffered, PipelineStats stats) {
+        chars.seek(0);
+        reset(chars);
+        lexer.addErrorListener(lexerListener);
+        TimedTokenSource timed = stats == null ? null : new TimedTokenSource(lexer);
+        TokenSource source = timed == null ? lexer : timed;
+        if (unbuffered) {
+            parser.setTokenStream(new UnbufferedTokenStream<Token>(source));
+        } else if (timed != null) {
+            tokens.setTokenSource(timed);
+        }
+        if (parserListener != null) {
+            parser.addErrorListener(parserListener);
+        }
+        parser.getInterpreter().setPredictionMode(mode);
+        parser.setErrorHandler(errorStrategy);
+
+        ASTListener listener = new ASTListener();
+        ParseTree parseTree = null;
+        PipelineStats.Timing timing = stats == null ? null : stats.start(PipelineStats.Stage.PARSE);
+        try {
+            if (buildParseTree) {
+                parseTree = parser.stylesheet();
+            } else {
+                parser.setBuildParseTree(false);
+                parser.addParseListener(listener);
+                parser.stylesheet();
+            }
+        } finally {
+            if (timing != null) {
+                timing.end(timed.nanos, timed.cpuNanos);
+                stats.setTokens(timed.tokens);
+            }
+        }
+        if (parseTree != null) {
+            timing = stats == null ? null : stats.start(PipelineStats.Stage.BUILD_AST);
+            // Iteratief: de walker zelf loopt niet vast op een diepe parse tree
+            new IterativeParseTreeWalker().walk(listener, parseTree);
+            if (timing != null) {
+                timing.end();
+            }
+        }
+        return listener.getAST();
+    }
+
+    private static void setParsePath(PipelineStats stats, String prediction, boolean parseTree) {
+        if (stats != null) {
+            stats.setParsePath(prediction + (parseTree ? ", parse tree" : ", AST tijdens het parsen"));
+        }
+    }
+
+    /**
+     * Houdt de syntaxfouten van één poging vast tot duidelijk is of die poging afloopt.
+     * Alleen syntaxError: de overige meldingen komen alleen van diagnostische listeners.
+     */
+    private static final class ErrorBuffer extends BaseErrorListener {
+        private final List<Object[]> errors = new ArrayList<>(0);
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            errors.add(new Object[]{recognizer, offendingSymbol, line, charPositionInLine, msg, e});
+        }
+
+        void forwardTo(ANTLRErrorListener listener) {
+            for (Object[] error : errors) {
+                listener.syntaxError((Recognizer<?, ?>) error[0], error[1], (Integer) error[2], (Integer) error[3],
+                        (String) error[4], (RecognitionException) error[5]);
+            }
+        }
+    }
+
+    /**
+     * Geeft de tokens van de lexer door en telt de tijd in nextToken() (wandklok en CPU-tijd van de thread)
+     * en het aantal tokens zonder EOF. Kost per token twee System.nanoTime()- en twee CPU-tijd-aanroepen,
+     * dus alleen met stats.
+     */
+    private static final class TimedTokenSource implements TokenSource {
+        private final TokenSource lexer;
+        long nanos;
+        long cpuNanos;
+        int tokens;
+
+        TimedTokenSource(TokenSource lexer) {
+            this.lexer = lexer;
+        }
+
+        @Override
+        public Token nextToken() {
+            long cpuStart = PipelineStats.cpuNow();
+            long start = System.nanoTime();
+            Token token = lexer.nextToken();
+            nanos += System.nanoTime() - start;
+            cpuNanos += PipelineStats.cpuNow() - cpuStart;
+            if (token.getType() != Token.EOF) {
+                tokens++;
+            }
+            return token;
+        }
+
+        @Override
+        public int getLine() {
+            return lexer.getLine();
+        }
+
+        @Override
+        public int getCharPositionInLine() {
+            return lexer.getCharPositionInLine();
+        }
+
+        @Override
+        public CharStream getInputStream() {
+            return lexer.getInputStream();
+        }
+
+        @Override
+        public String getSourceName() {
+            return lexer.getSourceName();
+        }
+
+        @Override
+        public void setTokenFactory(TokenFactory<?> factory) {
+            lexer.setTokenFactory(factory);
+        }
+
+        @Override
+        public TokenFactory<?> getTokenFactory() {
+            return lexer.getTokenFactory();
+        }
+    }
+
+    private void reset(CharStream input) {
+        lexer.setInputStream(input);
+        lexer.removeErrorListeners();
+        tokens.setTokenSource(lexer);
+        parser.setTokenStream(tokens);
+        // Parser.reset() laat de ATN-state staan; na een afgebroken parse zou de volgende stylesheet-context
+        // die als invokingState krijgen en de error recovery daarna de verkeerde rule-aanroep volgen
+        parser.setState(ATNState.INVALID_STATE_NUMBER);
+        parser.removeErrorListeners();
+        parser.removeParseListeners();
+        parser.setBuildParseTree(true);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+    }
+}
@@ -1,11 +1,13 @@
 package nl.han.ica.icss.transforms;
 
+import nl.han.ica.datastructures.HANStack;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.PercentageLiteral;
 import nl.han.ica.icss.ast.literals.PixelLiteral;
 import nl.han.ica.icss.ast.literals.ScalarLiteral;
 import nl.han.ica.icss.ast.operations.AddOperation;
 import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.NaryOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
 
 import nl.han.ica.icss.ast.types.*;
@@ -13,186 +15,604 @@ import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 /**
  * Evaluator — rekent de ICSS-boom uit.
  * Verwijdert variabele-assignments en if/else-structuren door alles
  * te evalueren tot concrete waardes (literals).
  * Resultaat: stylerules met declaraties waarin de expressies al uitgerekend zijn.
+ * Variabelen staan in platte frames (één Literal[] per scope-diepte). De Checker heeft elke
+ * VariableReference al gebonden aan (depth, slot); opzoeken is dus frames[depth][slot] zonder hashing.
+ * De Evaluator verwacht daarom een AST waar de Checker overheen is gegaan; een niet-gebonden variabele
+ * geeft een IllegalStateException in plaats van een stil verzonnen waarde.
+ * Met setCompileExpressions(true) worden expressies eerst gecompileerd (ExpressionCompiler) en als
+ * CompiledExpression op de AST bewaard; alleen wat niet te compileren is, wordt dan nog door de
+ * boom-interpreter uitgerekend. Compileren kost meer dan één keer interpreteren, dus het loont alleen
+ * als dezelfde gecheckte AST vaker wordt uitgerekend; daarom staat het standaard uit.
+ * Met setParallel(true) worden de stylerules tegelijk uitgerekend op de fork-join pool: de globale
+ * assignments gaan eerst op volgorde, elke stylerule krijgt een kopie van de globale variabelen zoals
+ * die op zijn plek gelden, en de uitgerekende stylerules komen weer in bronvolgorde in de nieuwe AST.
+ * Geneste if's worden met een expliciete stack (HANStack) afgelopen in plaats van recursief, en operaties
+ * alleen tot een vaste diepte, zodat diepe nesting of lange rekenketens de call stack niet laten overlopen.
  */
 
 public class Evaluator implements Transform {
 
-    private LinkedList<HashMap<String, Literal>> variableValues;
+    private static final Literal[] NO_VARIABLES = new Literal[0];
+    // Minimaal aantal stylerules per taak bij parallel uitrekenen
+    private static final int RULES_PER_TASK = 256;
+    // Diepte van een expressie tot waar recursief wordt uitgerekend (zie eval)
+    private static final int RECURSION_LIMIT = 64;
+
+    // frames[d] zijn de variabelen van de scope op diepte d; depth is de huidige scope
+    private Literal[][] frames;
+    private int depth;
+    private final BlockTransformer blockTransformer = new BlockTransformer();
+    private final ExpressionEvaluator expressionEvaluator = new ExpressionEvaluator();
+    private final ExpressionCompiler compiler = new ExpressionCompiler();
+    private boolean compileExpressions = false;
+    private boolean parallel = false;
+    // Statements die nog getransformeerd moeten worden; null betekent: scope verlaten
+    private final HANStack<ASTNode> statements = new HANStack<>();
+    // Post-order door expressies: expanded = de operanden staan al in values en de operatie zelf is aan de beurt
+    private final HANStack<Expression> expressions = new HANStack<>();
+    private final HANStack<Boolean> expanded = new HANStack<>();
+    private final HANStack<Literal> values = new HANStack<>();
+    // Operanden van de operatie die ExpressionEvaluator uitrekent
+    private Literal leftValue;
+    private Literal rightValue;
+    // Waardes die globale variabele-assignments vervangen (alleen tijdens evaluate(AST, Map))
+    private Map<String, Literal> overrides = Collections.emptyMap();
 
     public Evaluator() {
-        this.variableValues = new LinkedList<HashMap<String, Literal>>();
+        this.frames = new Literal[4][];
+    }
+
+    public boolean isCompileExpressions() {
+        return compileExpressions;
+    }
+
+    public void setCompileExpressions(boolean compileExpressions) {
+        this.compileExpressions = compileExpressions;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Rekent een gecheckte AST uit zonder die te veranderen en geeft een nieuwe AST terug.
+     * @param overrides waardes voor globale variabelen die de assignment in de stylesheet vervangen
+     *                  (het type moet overeenkomen, zie ThemeCompiler); de expressie van die
+     *                  assignment wordt dan niet uitgerekend
+     * Bedoeld om één geparste en gecheckte stylesheet vaak uit te rekenen, bijv. per thema.
+     * Niets wordt diep gekopieerd: selectors, literals, declaraties met een literal en stylerules
+     * waarin niets uit te rekenen valt, worden gedeeld met de nieuwe AST.
+     */
+    public AST evaluate(AST ast, Map<String, Literal> overrides) {
+        depth = 0;
+        frames[0] = NO_VARIABLES;
+        this.overrides = overrides;
+        try {
+            if (parallel) {
+                return new AST(new Stylesheet(evaluateParallel(ast.root.body)));
+            }
+            return new AST(new Stylesheet(new ArrayList<>(transfromBlock(ast.root.body))));
+        } finally {
+            this.overrides = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Rekent één gecheckte expressie uit met de gegeven variabelen: frames[depth][slot].
+     * Handig om dezelfde expressies herhaald met andere waardes uit te rekenen.
+     */
+    public Literal evaluate(Expression expression, Literal[][] frames) {
+        Literal[][] savedFrames = this.frames;
+        int savedDepth = depth;
+        this.frames = frames;
+        this.depth = frames.length - 1;
+        try {
+            return eval(expression);
+        } finally {
+            this.frames = savedFrames;
+            this.depth = savedDepth;
+        }
+    }
+    /**
+     * Rekent één gecheckte stylerule uit met de globale variabelen in globals (het frame op diepte 0,
+     * geïndexeerd op slot). Voor incrementeel uitrekenen; de invoer verandert niet.
+     * @return de uitgerekende knopen (de stylerule zelf als er niets uit te rekenen viel)
+     */
+    public List<ASTNode> evaluate(ASTNode statement, Literal[] globals) {
+        depth = 0;
+        frames[0] = globals;
+        try {
+            List<ASTNode> out = new ArrayList<>();
+            transform(statement, out);
+            return out;
+        } finally {
+            frames[0] = NO_VARIABLES;
+        }
     }
+
     /**
-     * apply(AST) — startpunt van de evaluatie.
+     * transform(AST) — rekent de AST uit zonder de invoer te veranderen (zie evaluate(AST, Map)).
+     */
+    @Override
+    public AST transform(AST ast) {
+        return evaluate(ast, Collections.emptyMap());
+    }
+
+    /**
+     * apply(AST) — startpunt van de evaluatie; past de meegegeven AST zelf aan.
      * 1) Maakt een globalscope.
      * 2) Transformeert alle kinderen van de stylesheet (variabelen uitrekenen, if's ontvouwen).
      * 3) Vervangt de originele kinderen door de vereenvoudigde lijst.
-     * 4) Ruimt de scope-stack op.
      */
 
     @Override
     public void apply(AST ast) {
-        variableValues.clear();
-        variableValues.push(new HashMap<String, Literal>());
+        depth = 0;
+        frames[0] = NO_VARIABLES;
 
         Stylesheet sheet = (Stylesheet) ast.root;
         List<ASTNode> simplified = transfromBlock(sheet.getChildren());
         List<ASTNode> kids = sheet.getChildren();
         kids.clear();
         kids.addAll(simplified);
-        variableValues.pop();
     }
 
 
 
-    private List<ASTNode> transfromBlock(List<ASTNode> nodes) {
-        List<ASTNode> out = new ArrayList<ASTNode>();
+    private ArrayList<ASTNode> evaluateParallel(List<ASTNode> nodes) {
+        List<Stylerule> rules = new ArrayList<>();
+        List<Literal[]> globals = new ArrayList<>();
+        // Stylerules krijgen eerst een lege plek in out, die na het parallel uitrekenen wordt ingevuld
+        ArrayList<ASTNode> out = new ArrayList<>(nodes.size());
+        int[] positions = new int[nodes.size()];
+        Literal[] snapshot = null;
         for (ASTNode node : nodes) {
-            if (node instanceof VariableAssignment) {
-                VariableAssignment varAssign = (VariableAssignment) node;
-                Literal value = eval(varAssign.expression);
-                ensureScope();
-                variableValues.peek().put(varAssign.name.name, value);
-            } else if (node instanceof IfClause) {
-                IfClause ifClause = (IfClause) node;
-                Literal condLit = eval(ifClause.conditionalExpression);
-                boolean cond = toBool(condLit);
-
-                List<ASTNode> chosen ;
-                if (cond) {
-                    chosen = ifClause.body;
-                } else {
-                    chosen = (ifClause.elseClause != null && ifClause.elseClause.body != null)
-                            ? ifClause.elseClause.body
-                            : Collections.<ASTNode>emptyList();
+            if (node instanceof Stylerule) {
+                if (snapshot == null) {
+                    snapshot = frames[0].clone();
                 }
-                variableValues.push(copyTopScope());
-                out.addAll(transfromBlock(chosen));
-                variableValues.pop();
-            } else if (node instanceof Declaration) {
-                Declaration declaration = (Declaration) node;
-                Literal value = eval(declaration.expression);
-                declaration.expression = value;
-                out.add(declaration);
-            } else if (node instanceof Stylerule) {
-                Stylerule stylerule = (Stylerule) node;
-                variableValues.push(copyTopScope());
-                Stylerule newStylerule = new Stylerule();
-                newStylerule.selectors = stylerule.selectors;
-                newStylerule.body = new ArrayList<>(transfromBlock(stylerule.body));
-                variableValues.pop();
-                out.add(newStylerule);
+                positions[rules.size()] = out.size();
+                rules.add((Stylerule) node);
+                globals.add(snapshot);
+                out.add(null);
             } else {
-                if (node.getChildren() != null && !node.getChildren().isEmpty()) {
-                    List<ASTNode> kids = transfromBlock(node.getChildren());
-                    node.getChildren().clear();
-                    node.getChildren().addAll(kids);
+                transform(node, out);
+                // Een assignment kan de globale variabelen veranderen
+                snapshot = null;
+            }
+        }
+        ASTNode[] results = new ASTNode[rules.size()];
+        ForkJoinPool.commonPool().invoke(new RuleEvaluation(rules, globals, results, compileExpressions, 0, rules.size()));
+        for (int i = 0; i < results.length; i++) {
+            out.set(positions[i], results[i]);
+        }
+        return out;
+    }
+
+    /**
+     * Rekent de stylerules from..to uit, elk met zijn eigen globale variabelen; het resultaat komt op
+     * dezelfde index in results. Grote stukken worden gehalveerd; elk blad gebruikt een eigen Evaluator.
+     */
+    @SuppressWarnings("serial") // Fork-join taken worden nooit geserialiseerd
+    private static class RuleEvaluation extends RecursiveAction {
+        private final List<Stylerule> rules;
+        private final List<Literal[]> globals;
+        private final ASTNode[] results;
+        private final boolean compileExpressions;
+        private final int from;
+        private final int to;
+
+        RuleEvaluation(List<Stylerule> rules, List<Literal[]> globals, ASTNode[] results,
+                       boolean compileExpressions, int from, int to) {
+            this.rules = rules;
+            this.globals = globals;
+            this.results = results;
+            this.compileExpressions = compileExpressions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= RULES_PER_TASK) {
+                Evaluator evaluator = new Evaluator();
+                evaluator.setCompileExpressions(compileExpressions);
+                List<ASTNode> out = new ArrayList<>(1);
+                for (int i = from; i < to; i++) {
+                    evaluator.frames[0] = globals.get(i);
+                    evaluator.transform(rules.get(i), out);
+                    // Een stylerule levert altijd precies één stylerule op
+                    results[i] = out.get(0);
+                    out.clear();
                 }
-                out.add(node);
+                return;
             }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RuleEvaluation(rules, globals, results, compileExpressions, from, middle),
+                    new RuleEvaluation(rules, globals, results, compileExpressions, middle, to));
         }
+    }
+
+    private List<ASTNode> transfromBlock(List<ASTNode> nodes) {
+        List<ASTNode> out = new ArrayList<ASTNode>();
+        int base = statements.size();
+        schedule(nodes, out);
+        transformUntil(base, out);
         return out;
     }
-// evaluatie van expressies
+
+    private void transform(ASTNode node, List<ASTNode> out) {
+        int base = statements.size();
+        statements.push(node);
+        transformUntil(base, out);
+    }
+
+    // Werkt de stack af tot de hoogte van voor de aanroep; een stylerule roept transfromBlock
+    // opnieuw aan voor zijn body en gebruikt daarbij dezelfde stack
+    private void transformUntil(int base, List<ASTNode> out) {
+        while (statements.size() > base) {
+            ASTNode node = statements.pop();
+            if (node == null) {
+                exitScope();
+            } else {
+                node.accept(blockTransformer, out);
+            }
+        }
+    }
+
+    // Alles vóór het eerste if wordt direct getransformeerd (dat laat niets op de stack achter);
+    // vanaf dat if gaat de rest in omgekeerde volgorde op de stack, zodat de volgorde in out klopt
+    private void schedule(List<ASTNode> nodes, List<ASTNode> out) {
+        int nested = 0;
+        while (nested < nodes.size() && !(nodes.get(nested) instanceof IfClause)) {
+            nested++;
+        }
+        for (int i = nodes.size() - 1; i >= nested; i--) {
+            statements.push(nodes.get(i));
+        }
+        for (int i = 0; i < nested; i++) {
+            nodes.get(i).accept(blockTransformer, out);
+        }
+    }
+
     private Literal eval(Expression expression) {
-        if (expression instanceof Literal) {
-            return (Literal) expression;
+        if (compileExpressions) {
+            CompiledExpression compiled = compiler.compile(expression);
+            if (compiled != null) {
+                return compiled.evaluate(frames);
+            }
+        }
+        return eval(expression, 0);
+    }
+
+    // Recursief tot RECURSION_LIMIT niveaus diep (gewone expressies komen daar nooit aan),
+    // daarna neemt evalOperation het over met expliciete stacks
+    private Literal eval(Expression expression, int depth) {
+        if (expression instanceof NaryOperation) {
+            return evalChain((NaryOperation) expression, depth);
+        }
+        if (!(expression instanceof Operation)) {
+            return expression.accept(expressionEvaluator, null);
+        }
+        Operation operation = (Operation) expression;
+        if (depth == RECURSION_LIMIT) {
+            return evalOperation(operation);
+        }
+        Literal left = eval(operation.lhs, depth + 1);
+        Literal right = eval(operation.rhs, depth + 1);
+        return apply(operation, left, right);
+    }
+
+    // Rekent een operatie uit waarvan de operanden al een waarde hebben
+    private Literal apply(Operation operation, Literal left, Literal right) {
+        leftValue = left;
+        rightValue = right;
+        return operation.accept(expressionEvaluator, null);
+    }
+
+    // Post-order zonder recursie: eerst beide operanden (hun waardes komen op values), dan de operatie zelf
+    private Literal evalOperation(Operation root) {
+        int base = expressions.size();
+        expressions.push(root);
+        expanded.push(Boolean.FALSE);
+        while (expressions.size() > base) {
+            Expression expression = expressions.pop();
+            if (expanded.pop()) {
+                Literal right = values.pop();
+                values.push(apply((Operation) expression, values.pop(), right));
+            } else if (expression instanceof Operation) {
+                Operation operation = (Operation) expression;
+                expressions.push(operation);
+                expanded.push(Boolean.TRUE);
+                expressions.push(operation.rhs);
+                expanded.push(Boolean.FALSE);
+                expressions.push(operation.lhs);
+                expanded.push(Boolean.FALSE);
+            } else {
+                values.push(expression.accept(expressionEvaluator, null));
+            }
         }
-        if (expression instanceof VariableReference) {
-            String name = ((VariableReference) expression).name;
-            Literal value = lookup(name);
+        return values.pop();
+    }
+
+    /**
+     * Transformeert één statement; het resultaat (nul of meer knopen) komt in de meegegeven lijst.
+     */
+    private class BlockTransformer implements ASTVisitor<Void, List<ASTNode>> {
+        @Override
+        public Void visitVariableAssignment(VariableAssignment varAssign, List<ASTNode> out) {
+            Literal value = varAssign.name.depth == 0 ? overrides.get(varAssign.name.name) : null;
             if (value == null) {
-                expression.setError("Onbekende variabele: " + name);
-                return new ScalarLiteral(0);
+                value = eval(varAssign.expression);
             }
-            return value;
+            assign(varAssign.name, value);
+            return null;
         }
-        if (expression instanceof Operation) {
-            Operation operation = (Operation) expression;
-            Literal left = eval(operation.lhs);
-            Literal right = eval(operation.rhs);
-//Vermenigvuldigen
-            if (operation instanceof MultiplyOperation) {
-                if (left instanceof PixelLiteral && right instanceof ScalarLiteral) {
-                    return new PixelLiteral(((PixelLiteral) left).value * ((ScalarLiteral) right).value);
-                }
-                if (left instanceof ScalarLiteral && right instanceof PixelLiteral) {
-                    return new PixelLiteral(((ScalarLiteral) left).value * ((PixelLiteral) right).value);
-                }
 
-                if (left instanceof PercentageLiteral && right instanceof ScalarLiteral) {
-                    return new PercentageLiteral(((PercentageLiteral) left).value * ((ScalarLiteral) right).value);
-                }
-                if (left instanceof ScalarLiteral && right instanceof PercentageLiteral) {
-                    return new PercentageLiteral(((ScalarLiteral) left).value * ((PercentageLiteral) right).value);
-                }
-                if (left instanceof ScalarLiteral && right instanceof ScalarLiteral) {
-                    return new ScalarLiteral(((ScalarLiteral) left).value * ((ScalarLiteral) right).value);
-                }
-                if (left instanceof ColorLiteral || right instanceof ColorLiteral) {
-                    operation.setError("Vermenigvuldiging met color is niet toegestaan.");
-                    return new ScalarLiteral(0);
-                }
-                operation.setError("Ongeldige vermenigvuldiging: " +
-                        left.getClass().getSimpleName() + " * " + right.getClass().getSimpleName());
-                return new ScalarLiteral(0);
+        @Override
+        public Void visitIfClause(IfClause ifClause, List<ASTNode> out) {
+            Literal condLit = eval(ifClause.conditionalExpression);
+            boolean cond = toBool(condLit);
+
+            List<ASTNode> chosen ;
+            if (cond) {
+                chosen = ifClause.body;
+            } else {
+                chosen = (ifClause.elseClause != null && ifClause.elseClause.body != null)
+                        ? ifClause.elseClause.body
+                        : Collections.<ASTNode>emptyList();
             }
-            //optellen
-            if (operation instanceof AddOperation) {
-                if (left instanceof PixelLiteral && right instanceof PixelLiteral) {
-                    return new PixelLiteral(((PixelLiteral) left).value + ((PixelLiteral) right).value);
-                }
-                if (left instanceof PercentageLiteral && right instanceof PercentageLiteral) {
-                    return new PercentageLiteral(((PercentageLiteral) left).value + ((PercentageLiteral) right).value);
-                }
-                if (left instanceof ScalarLiteral && right instanceof ScalarLiteral) {
-                    return new ScalarLiteral(((ScalarLiteral) left).value + ((ScalarLiteral) right).value);
-                }
-                operation.setError("Ongeldige optelling: " +
-                        left.getClass().getSimpleName() + " + " + right.getClass().getSimpleName());
+            // De gekozen body komt via de stack in dezelfde out; null sluit daarna de scope
+            enterScope();
+            statements.push(null);
+            schedule(chosen, out);
+            return null;
+        }
+
+        @Override
+        public Void visitDeclaration(Declaration declaration, List<ASTNode> out) {
+            Literal value = eval(declaration.expression);
+            if (value == declaration.expression) {
+                // Was al een literal: de declaratie ongewijzigd delen met de invoer
+                out.add(declaration);
+                return null;
+            }
+            // Nieuwe declaratie, zodat de invoer-AST herbruikbaar blijft
+            Declaration result = new Declaration();
+            result.property = declaration.property;
+            result.expression = value;
+            out.add(result);
+            return null;
+        }
+
+        @Override
+        public Void visitStylerule(Stylerule stylerule, List<ASTNode> out) {
+            enterScope();
+            List<ASTNode> body = transfromBlock(stylerule.body);
+            exitScope();
+            if (sameNodes(body, stylerule.body)) {
+                // Niets uit te rekenen in deze regel: de hele stylerule delen met de invoer
+                out.add(stylerule);
+                return null;
+            }
+            Stylerule newStylerule = new Stylerule();
+            newStylerule.selectors = stylerule.selectors;
+            newStylerule.body = new ArrayList<>(body);
+            out.add(newStylerule);
+            return null;
+        }
+
+        @Override
+        public Void visitNode(ASTNode node, List<ASTNode> out) {
+            List<ASTNode> children = node.getChildren();
+            if (!children.isEmpty()) {
+                List<ASTNode> kids = transfromBlock(children);
+                children.clear();
+                children.addAll(kids);
+            }
+            out.add(node);
+            return null;
+        }
+    }
+
+    /**
+     * Rekent een expressie uit tot een Literal. Bij een fout komt de melding op de knoop
+     * en is het resultaat ScalarLiteral(0).
+     * Een operatie wordt pas bezocht als de waardes van zijn operanden al bekend zijn; die staan
+     * dan in leftValue en rightValue (zie apply).
+     */
+    private class ExpressionEvaluator implements ASTVisitor<Literal, Void> {
+        @Override
+        public Literal visitLiteral(Literal literal, Void context) {
+            return literal;
+        }
+
+        @Override
+        public Literal visitVariableReference(VariableReference reference, Void context) {
+            Literal value = lookup(reference);
+            if (value == null) {
+                reference.setError("Onbekende variabele: " + reference.name);
                 return new ScalarLiteral(0);
             }
+            return value;
+        }
+//Vermenigvuldigen
+        @Override
+        public Literal visitMultiplyOperation(MultiplyOperation operation, Void context) {
+            return multiply(operation, leftValue, rightValue);
+        }
+        //optellen
+        @Override
+        public Literal visitAddOperation(AddOperation operation, Void context) {
+            return add(operation, leftValue, rightValue);
+        }
 // Aftrekken
-            if (operation instanceof SubtractOperation) {
-                if (left instanceof PixelLiteral && right instanceof PixelLiteral) {
-                    return new PixelLiteral(((PixelLiteral) left).value - ((PixelLiteral) right).value);
-                }
-                if (left instanceof PercentageLiteral && right instanceof PercentageLiteral) {
-                    return new PercentageLiteral(((PercentageLiteral) left).value - ((PercentageLiteral) right).value);
-                }
-                if (left instanceof ScalarLiteral && right instanceof ScalarLiteral) {
-                    return new ScalarLiteral(((ScalarLiteral) left).value - ((ScalarLiteral) right).value);
-                }
-                operation.setError("Ongeldige aftrekking: " +
-                        left.getClass().getSimpleName() + " - " + right.getClass().getSimpleName());
-                return new ScalarLiteral(0);
+        @Override
+        public Literal visitSubtractOperation(SubtractOperation operation, Void context) {
+            return subtract(operation, leftValue, rightValue);
+        }
+
+        @Override
+        public Literal visitNaryOperation(NaryOperation operation, Void context) {
+            return evalChain(operation, 0);
+        }
+
+        @Override
+        public Literal visitOperation(Operation operation, Void context) {
+            return visitNode(operation, context);
+        }
+
+        @Override
+        public Literal visitNode(ASTNode node, Void context) {
+            node.setError("Niet-ondersteunde expressie: " + node.getClass().getSimpleName());
+            return new ScalarLiteral(0);
+        }
+    }
+
+    // Een som of product in één lus van links naar rechts; elke stap rekent zoals de binaire operatie
+    private Literal evalChain(NaryOperation operation, int depth) {
+        Literal value = eval(operation.getOperand(0), depth + 1);
+        for (int i = 1; i < operation.size(); i++) {
+            Literal right = eval(operation.getOperand(i), depth + 1);
+            switch (operation.getOperator(i)) {
+                case PLUS:
+                    value = add(operation, value, right);
+                    break;
+                case MIN:
+                    value = subtract(operation, value, right);
+                    break;
+                default:
+                    value = multiply(operation, value, right);
+                    break;
             }
         }
-        expression.setError("Niet-ondersteunde expressie: " + expression.getClass().getSimpleName());
+        return value;
+    }
+
+    private Literal multiply(Expression operation, Literal left, Literal right) {
+        if (left instanceof PixelLiteral && right instanceof ScalarLiteral) {
+            return new PixelLiteral(((PixelLiteral) left).value * ((ScalarLiteral) right).value);
+        }
+        if (left instanceof ScalarLiteral && right instanceof PixelLiteral) {
+            return new PixelLiteral(((ScalarLiteral) left).value * ((PixelLiteral) right).value);
+        }
+
+        if (left instanceof PercentageLiteral && right instanceof ScalarLiteral) {
+            return new PercentageLiteral(((PercentageLiteral) left).value * ((ScalarLiteral) right).value);
+        }
+        if (left instanceof ScalarLiteral && right instanceof PercentageLiteral) {
+            return new PercentageLiteral(((ScalarLiteral) left).value * ((PercentageLiteral) right).value);
+        }
+        if (left instanceof ScalarLiteral && right instanceof ScalarLiteral) {
+            return new ScalarLiteral(((ScalarLiteral) left).value * ((ScalarLiteral) right).value);
+        }
+        if (left instanceof ColorLiteral || right instanceof ColorLiteral) {
+            operation.setError("Vermenigvuldiging met color is niet toegestaan.");
+            return new ScalarLiteral(0);
+        }
+        operation.setError("Ongeldige vermenigvuldiging: " +
+                left.getClass().getSimpleName() + " * " + right.getClass().getSimpleName());
         return new ScalarLiteral(0);
+    }
 
+    private Literal add(Expression operation, Literal left, Literal right) {
+        if (left instanceof PixelLiteral && right instanceof PixelLiteral) {
+            return new PixelLiteral(((PixelLiteral) left).value + ((PixelLiteral) right).value);
+        }
+        if (left instanceof PercentageLiteral && right instanceof PercentageLiteral) {
+            return new PercentageLiteral(((PercentageLiteral) left).value + ((PercentageLiteral) right).value);
+        }
+        if (left instanceof ScalarLiteral && right instanceof ScalarLiteral) {
+            return new ScalarLiteral(((ScalarLiteral) left).value + ((ScalarLiteral) right).value);
+        }
+        operation.setError("Ongeldige optelling: " +
+                left.getClass().getSimpleName() + " + " + right.getClass().getSimpleName());
+        return new ScalarLiteral(0);
     }
 
+    private Literal subtract(Expression operation, Literal left, Literal right) {
+        if (left instanceof PixelLiteral && right instanceof PixelLiteral) {
+            return new PixelLiteral(((PixelLiteral) left).value - ((PixelLiteral) right).value);
+        }
+        if (left instanceof PercentageLiteral && right instanceof PercentageLiteral) {
+            return new PercentageLiteral(((PercentageLiteral) left).value - ((PercentageLiteral) right).value);
+        }
+        if (left instanceof ScalarLiteral && right instanceof ScalarLiteral) {
+            return new ScalarLiteral(((ScalarLiteral) left).value - ((ScalarLiteral) right).value);
+        }
+        operation.setError("Ongeldige aftrekking: " +
+                left.getClass().getSimpleName() + " - " + right.getClass().getSimpleName());
+        return new ScalarLiteral(0);
+    }
 
-    private Literal lookup(String name) {
-        for (HashMap<String, Literal> scope : variableValues) {
-            if (scope.containsKey(name)) {
-                return scope.get(name);
+    private static boolean sameNodes(List<ASTNode> result, List<ASTNode> source) {
+        if (result.size() != source.size()) {
+            return false;
+        }
+        for (int i = 0; i < result.size(); i++) {
+            if (result.get(i) != source.get(i)) {
+                return false;
             }
         }
-        return null;
+        return true;
+    }
+
+    private void enterScope() {
+        depth++;
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, frames.length * 2);
+        }
+        frames[depth] = NO_VARIABLES;
+    }
+
+    private void exitScope() {
+        frames[depth] = null;
+        depth--;
+    }
+
+    // UNDEFINED: de Checker kende de variabele niet (en heeft dat al gemeld); UNBOUND: de Checker is
+    // nooit over deze referentie gegaan, dus er is geen plek om de waarde op te zoeken
+    private Literal lookup(VariableReference reference) {
+        if (reference.depth == VariableReference.UNBOUND) {
+            throw notChecked();
+        }
+        if (reference.depth < 0 || reference.depth > depth) {
+            return null;
+        }
+        Literal[] frame = frames[reference.depth];
+        return reference.slot < frame.length ? frame[reference.slot] : null;
     }
 
-    private void ensureScope() {
-        if (variableValues.isEmpty()) {
-            variableValues.push(new HashMap<String, Literal>());
+    private void assign(VariableReference name, Literal value) {
+        if (name.depth == VariableReference.UNBOUND) {
+            throw notChecked();
+        }
+        if (name.depth < 0 || name.depth > depth) {
+            return;
+        }
+        Literal[] frame = frames[name.depth];
+        if (name.slot >= frame.length) {
+            frame = Arrays.copyOf(frame, Math.max(name.slot + 1, frame.length * 2));
+            frames[name.depth] = frame;
         }
+        frame[name.slot] = value;
+    }
+
+    private static IllegalStateException notChecked() {
+        return new IllegalStateException("AST is niet gecontroleerd (run de Checker eerst).");
     }
+
     private boolean toBool(Literal condLit) {
         if (condLit instanceof BoolLiteral) {
             return ((BoolLiteral) condLit).value;
@@ -200,14 +620,5 @@ public class Evaluator implements Transform {
         condLit.setError("If-conditie moet BOOL zijn.");
         return false;
 }
-    /**
-     * copyTopScope() — maakt een defensieve kopie van de huidige (bovenste) scope.
-     * Zo kunnen we binnen stylerules en if/else-branches veilig variabelen wijzigen
-     * zonder dat die wijzigingen ‘lekken’ naar hogere scopes.
-     */
-
-    private HashMap<String, Literal> copyTopScope() {
-        return variableValues.isEmpty() ? new HashMap<>() : new HashMap<>(variableValues.peek());
-    }
 
 }
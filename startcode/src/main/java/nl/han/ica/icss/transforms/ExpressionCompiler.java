@@ -0,0 +1,428 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.NaryOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+/**
+ * ExpressionCompiler — zet gecheckte expressies om naar CompiledExpression-objecten.
+ * - Rekenwerk met pixels, percentages en scalars wordt een klein int-programma (postfix, zie Program)
+ *   dat in één lus op een int-stack draait; alleen het eindresultaat wordt weer een Literal.
+ * - Het type van elke knoop volgt uit de literals en uit de types die de Checker op de
+ *   VariableReferences heeft gezet; tijdens het evalueren wordt er niets meer gecontroleerd.
+ * - Deelexpressies met alleen literals worden direct uitgerekend (constant folding).
+ * - Het resultaat wordt op de expressie bewaard (Expression.compiled). De Checker wist die cache
+ *   zodra hij de expressie opnieuw checkt, want depth, slot en type kunnen dan veranderd zijn.
+ * - Kan een expressie niet gecompileerd worden (ongebonden variabele of typefout), dan geeft
+ *   compile() null; de Evaluator interpreteert die expressie dan zelf en meldt de fout.
+ *   Ook dat wordt bewaard (als UNCOMPILABLE), zodat het niet bij elke evaluatie opnieuw geprobeerd wordt.
+ * - Compileren en het uitschrijven van het programma gebruiken expliciete stacks in plaats van recursie,
+ *   zodat ook een keten van tienduizenden operaties compileert.
+ */
+public class ExpressionCompiler {
+
+    // Markering in Expression.compiled: deze expressie is niet te compileren
+    private static final CompiledExpression UNCOMPILABLE = new CompiledExpression(null) {
+        @Override
+        public Literal evaluate(Literal[][] frames) {
+            throw new IllegalStateException("Expressie is niet gecompileerd");
+        }
+    };
+
+    private final Compiler compiler = new Compiler();
+    // Post-order door de expressie, zoals in de Evaluator: expanded = de operanden staan al in codes
+    private final HANStack<Expression> expressions = new HANStack<>();
+    private final HANStack<Boolean> expanded = new HANStack<>();
+    private final HANStack<Code> codes = new HANStack<>();
+
+    public CompiledExpression compile(Expression expression) {
+        if (expression == null) {
+            return null;
+        }
+        if (expression.compiled == null) {
+            Code code = generate(expression);
+            expression.compiled = code == null ? UNCOMPILABLE : code.finish();
+        }
+        return expression.compiled == UNCOMPILABLE ? null : expression.compiled;
+    }
+
+    private Code generate(Expression root) {
+        if (!(root instanceof Operation)) {
+            return root.accept(compiler, null);
+        }
+        Operation top = (Operation) root;
+        if (isLeaf(top.lhs) && isLeaf(top.rhs)) {
+            // Meestal: geen operaties als operand, dan is de expressies-stack niet nodig
+            codes.push(top.lhs == null ? null : top.lhs.accept(compiler, null));
+            codes.push(top.rhs == null ? null : top.rhs.accept(compiler, null));
+            return top.accept(compiler, null);
+        }
+        int base = expressions.size();
+        expressions.push(root);
+        expanded.push(Boolean.FALSE);
+        while (expressions.size() > base) {
+            Expression expression = expressions.pop();
+            if (expanded.pop()) {
+                codes.push(expression.accept(compiler, null));
+            } else if (expression instanceof Operation) {
+                Operation operation = (Operation) expression;
+                expressions.push(operation);
+                expanded.push(Boolean.TRUE);
+                expressions.push(operation.rhs);
+                expanded.push(Boolean.FALSE);
+                expressions.push(operation.lhs);
+                expanded.push(Boolean.FALSE);
+            } else {
+                codes.push(expression == null ? null : expression.accept(compiler, null));
+            }
+        }
+        return codes.pop();
+    }
+
+    private static boolean isLeaf(Expression expression) {
+        return !(expression instanceof Operation);
+    }
+
+    /**
+     * Een operatie wordt pas bezocht als de Code van zijn operanden al op de stack codes staat
+     * (zie generate); rechts ligt bovenop.
+     */
+    private class Compiler implements ASTVisitor<Code, Void> {
+        @Override
+        public Code visitNode(ASTNode node, Void context) {
+            return null;
+        }
+
+        @Override
+        public Code visitOperation(Operation operation, Void context) {
+            codes.pop();
+            codes.pop();
+            return null;
+        }
+
+        @Override
+        public Code visitPixelLiteral(PixelLiteral literal, Void context) {
+            return Code.constant(ExpressionType.PIXEL, literal, literal.value);
+        }
+
+        @Override
+        public Code visitPercentageLiteral(PercentageLiteral literal, Void context) {
+            return Code.constant(ExpressionType.PERCENTAGE, literal, literal.value);
+        }
+
+        @Override
+        public Code visitScalarLiteral(ScalarLiteral literal, Void context) {
+            return Code.constant(ExpressionType.SCALAR, literal, literal.value);
+        }
+
+        @Override
+        public Code visitColorLiteral(ColorLiteral literal, Void context) {
+            return Code.constant(ExpressionType.COLOR, literal, 0);
+        }
+
+        @Override
+        public Code visitBoolLiteral(BoolLiteral literal, Void context) {
+            return Code.constant(ExpressionType.BOOL, literal, 0);
+        }
+
+        @Override
+        public Code visitVariableReference(VariableReference reference, Void context) {
+            if (reference.depth < 0 || reference.type == null) {
+                return null;
+            }
+            return Code.variable(reference.type, reference.depth, reference.slot);
+        }
+
+        @Override
+        public Code visitAddOperation(AddOperation operation, Void context) {
+            Code right = codes.pop();
+            return additive(Program.ADD, codes.pop(), right);
+        }
+
+        @Override
+        public Code visitSubtractOperation(SubtractOperation operation, Void context) {
+            Code right = codes.pop();
+            return additive(Program.SUBTRACT, codes.pop(), right);
+        }
+
+        @Override
+        public Code visitMultiplyOperation(MultiplyOperation operation, Void context) {
+            Code right = codes.pop();
+            return multiply(codes.pop(), right);
+        }
+
+        // Een som of product wordt links naar rechts een keten van binaire Codes, net als de binaire operaties
+        @Override
+        public Code visitNaryOperation(NaryOperation operation, Void context) {
+            Code code = generate(operation.getOperand(0));
+            for (int i = 1; i < operation.size() && code != null; i++) {
+                Code right = generate(operation.getOperand(i));
+                switch (operation.getOperator(i)) {
+                    case PLUS:
+                        code = additive(Program.ADD, code, right);
+                        break;
+                    case MIN:
+                        code = additive(Program.SUBTRACT, code, right);
+                        break;
+                    default:
+                        code = multiply(code, right);
+                        break;
+                }
+            }
+            return code;
+        }
+    }
+
+    private static Code additive(int op, Code left, Code right) {
+        if (left == null || right == null || left.type != right.type || !isNumeric(left.type)) {
+            return null;
+        }
+        return Code.binary(left.type, op, left, right);
+    }
+
+    private static Code multiply(Code left, Code right) {
+        if (left == null || right == null || !isNumeric(left.type) || !isNumeric(right.type)) {
+            return null;
+        }
+        // Minstens één kant moet scalar zijn; het resultaat krijgt het type van de andere kant
+        ExpressionType type;
+        if (left.type == ExpressionType.SCALAR) {
+            type = right.type;
+        } else if (right.type == ExpressionType.SCALAR) {
+            type = left.type;
+        } else {
+            return null;
+        }
+        return Code.binary(type, Program.MULTIPLY, left, right);
+    }
+
+    private static boolean isNumeric(ExpressionType type) {
+        return type == ExpressionType.PIXEL || type == ExpressionType.PERCENTAGE || type == ExpressionType.SCALAR;
+    }
+
+    private static Literal literal(ExpressionType type, int value) {
+        switch (type) {
+            case PIXEL:
+                return new PixelLiteral(value);
+            case PERCENTAGE:
+                return new PercentageLiteral(value);
+            default:
+                return new ScalarLiteral(value);
+        }
+    }
+
+    /**
+     * Tussenvorm tijdens het compileren: een constante, een variabele of een operatie op twee Codes.
+     * finish() maakt er de uiteindelijke CompiledExpression van.
+     */
+    private static final class Code {
+        final ExpressionType type;
+        final int op;
+        final Literal literal;
+        final int value;
+        final int depth;
+        final int slot;
+        final Code lhs;
+        final Code rhs;
+        final int size;
+        final int stack;
+
+        private Code(ExpressionType type, int op, Literal literal, int value, int depth, int slot, Code lhs, Code rhs) {
+            this.type = type;
+            this.op = op;
+            this.literal = literal;
+            this.value = value;
+            this.depth = depth;
+            this.slot = slot;
+            this.lhs = lhs;
+            this.rhs = rhs;
+            if (lhs == null) {
+                this.size = op == Program.CONSTANT ? 2 : 3;
+                this.stack = 1;
+            } else {
+                this.size = lhs.size + rhs.size + 1;
+                this.stack = Math.max(lhs.stack, rhs.stack + 1);
+            }
+        }
+
+        static Code constant(ExpressionType type, Literal literal, int value) {
+            return new Code(type, Program.CONSTANT, literal, value, -1, -1, null, null);
+        }
+
+        static Code variable(ExpressionType type, int depth, int slot) {
+            int op = type == ExpressionType.PIXEL ? Program.LOAD_PIXEL
+                    : type == ExpressionType.PERCENTAGE ? Program.LOAD_PERCENTAGE
+                    : type == ExpressionType.SCALAR ? Program.LOAD_SCALAR
+                    : Program.LOAD;
+            return new Code(type, op, null, 0, depth, slot, null, null);
+        }
+
+        static Code binary(ExpressionType type, int op, Code lhs, Code rhs) {
+            if (lhs.op == Program.CONSTANT && rhs.op == Program.CONSTANT) {
+                int value = Program.apply(op, lhs.value, rhs.value);
+                return constant(type, literal(type, value), value);
+            }
+            return new Code(type, op, null, 0, -1, -1, lhs, rhs);
+        }
+
+        CompiledExpression finish() {
+            if (op == Program.CONSTANT) {
+                return new Constant(type, literal);
+            }
+            if (lhs == null) {
+                return new Variable(type, depth, slot);
+            }
+            int[] code = new int[size];
+            emit(code);
+            return new Program(type, code, stack);
+        }
+
+        // Schrijft deze boom in postfix-volgorde; een operatie staat een tweede keer op de stack (met
+        // expanded) als zijn operanden al geschreven zijn
+        private void emit(int[] code) {
+            HANStack<Code> work = new HANStack<>();
+            HANStack<Boolean> expanded = new HANStack<>();
+            work.push(this);
+            expanded.push(Boolean.FALSE);
+            int at = 0;
+            while (!work.isEmpty()) {
+                Code node = work.pop();
+                if (expanded.pop()) {
+                    code[at++] = node.op;
+                } else if (node.lhs != null) {
+                    work.push(node);
+                    expanded.push(Boolean.TRUE);
+                    work.push(node.rhs);
+                    expanded.push(Boolean.FALSE);
+                    work.push(node.lhs);
+                    expanded.push(Boolean.FALSE);
+                } else {
+                    code[at++] = node.op;
+                    if (node.op == Program.CONSTANT) {
+                        code[at++] = node.value;
+                    } else {
+                        code[at++] = node.depth;
+                        code[at++] = node.slot;
+                    }
+                }
+            }
+        }
+    }
+
+    // Gecompileerde expressies
+
+    private static final class Constant extends CompiledExpression {
+        final Literal literal;
+
+        Constant(ExpressionType type, Literal literal) {
+            super(type);
+            this.literal = literal;
+        }
+
+        @Override
+        public Literal evaluate(Literal[][] frames) {
+            return literal;
+        }
+    }
+
+    private static final class Variable extends CompiledExpression {
+        final int depth;
+        final int slot;
+
+        Variable(ExpressionType type, int depth, int slot) {
+            super(type);
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        public Literal evaluate(Literal[][] frames) {
+            return frames[depth][slot];
+        }
+    }
+
+    /**
+     * Rekenwerk als postfix int-programma:
+     * CONSTANT v | LOAD_PIXEL/LOAD_PERCENTAGE/LOAD_SCALAR depth slot | ADD | SUBTRACT | MULTIPLY
+     */
+    private static final class Program extends CompiledExpression {
+        static final int CONSTANT = 0;
+        static final int LOAD_PIXEL = 1;
+        static final int LOAD_PERCENTAGE = 2;
+        static final int LOAD_SCALAR = 3;
+        static final int ADD = 4;
+        static final int SUBTRACT = 5;
+        static final int MULTIPLY = 6;
+        // Alleen in Code: variabele die geen getal is (color of bool), wordt nooit een Program
+        static final int LOAD = 7;
+
+        final int[] code;
+        final int stackSize;
+
+        Program(ExpressionType type, int[] code, int stackSize) {
+            super(type);
+            this.code = code;
+            this.stackSize = stackSize;
+        }
+
+        static int apply(int op, int lhs, int rhs) {
+            switch (op) {
+                case ADD:
+                    return lhs + rhs;
+                case SUBTRACT:
+                    return lhs - rhs;
+                default:
+                    return lhs * rhs;
+            }
+        }
+
+        @Override
+        public Literal evaluate(Literal[][] frames) {
+            int[] code = this.code;
+            int[] stack = new int[stackSize];
+            int sp = 0;
+            int pc = 0;
+            while (pc < code.length) {
+                switch (code[pc]) {
+                    case CONSTANT:
+                        stack[sp++] = code[pc + 1];
+                        pc += 2;
+                        break;
+                    case LOAD_PIXEL:
+                        stack[sp++] = ((PixelLiteral) frames[code[pc + 1]][code[pc + 2]]).value;
+                        pc += 3;
+                        break;
+                    case LOAD_PERCENTAGE:
+                        stack[sp++] = ((PercentageLiteral) frames[code[pc + 1]][code[pc + 2]]).value;
+                        pc += 3;
+                        break;
+                    case LOAD_SCALAR:
+                        stack[sp++] = ((ScalarLiteral) frames[code[pc + 1]][code[pc + 2]]).value;
+                        pc += 3;
+                        break;
+                    case ADD:
+                        sp--;
+                        stack[sp - 1] += stack[sp];
+                        pc++;
+                        break;
+                    case SUBTRACT:
+                        sp--;
+                        stack[sp - 1] -= stack[sp];
+                        pc++;
+                        break;
+                    default:
+                        sp--;
+                        stack[sp - 1] *= stack[sp];
+                        pc++;
+                        break;
+                }
+            }
+            return literal(type, stack[0]);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Optimizer — maakt een uitgerekende AST (na de Evaluator) kleiner zonder de betekenis van de CSS te veranderen.
+ * 1) Binnen een stylerule wint de laatste declaratie van een property; eerdere declaraties van dezelfde
+ *    property (hoofdletterongevoelig) worden weggelaten.
+ * 2) Stylerules met precies dezelfde body worden samengevoegd tot één stylerule met alle selectors,
+ *    op de plek van de eerste. Dat mag alleen als geen stylerule daartussen een van die properties zet:
+ *    anders kan een element dat door beide selectors geraakt wordt een andere waarde krijgen (cascade).
+ *    De specificiteit verandert niet, want elke selector blijft dezelfde.
+ * transform(AST) laat de invoer heel en deelt stylerules waar niets aan verandert; apply(AST) past de AST zelf aan.
+ */
+public class Optimizer implements Transform {
+
+    @Override
+    public AST transform(AST ast) {
+        return new AST(new Stylesheet(optimize(ast.root.body)));
+    }
+
+    @Override
+    public void apply(AST ast) {
+        ArrayList<ASTNode> optimized = optimize(ast.root.body);
+        ast.root.body.clear();
+        ast.root.body.addAll(optimized);
+    }
+
+    private ArrayList<ASTNode> optimize(List<ASTNode> nodes) {
+        ArrayList<ASTNode> out = new ArrayList<>(nodes.size());
+        // Body (zie key) → stylerule in out waar een volgende stylerule met die body bij kan
+        Map<List<Object>, Stylerule> candidates = new HashMap<>();
+        // Property → laatste stylerule in out die hem zet
+        Map<String, Stylerule> lastWriter = new HashMap<>();
+        // Stylerule in out → positie, om een gedeelde stylerule te vervangen door een eigen kopie
+        Map<Stylerule, Integer> positions = new IdentityHashMap<>();
+        // Stylerules die hier gemaakt zijn en dus aangepast mogen worden
+        Set<Stylerule> own = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (ASTNode node : nodes) {
+            if (!(node instanceof Stylerule) || !onlyDeclarations((Stylerule) node)) {
+                if (node instanceof Stylerule) {
+                    for (ASTNode child : ((Stylerule) node).body) {
+                        if (child instanceof Declaration) {
+                            lastWriter.put(property((Declaration) child), (Stylerule) node);
+                        }
+                    }
+                }
+                out.add(node);
+                continue;
+            }
+            Stylerule rule = removeOverridden((Stylerule) node);
+            if (rule != node) {
+                own.add(rule);
+            }
+            if (rule.body.isEmpty()) {
+                out.add(rule);
+                continue;
+            }
+            List<Object> key = key(rule.body);
+            Stylerule candidate = candidates.get(key);
+            if (candidate != null && isLastWriter(candidate, rule.body, lastWriter)) {
+                if (!own.contains(candidate)) {
+                    candidate = replaceWithCopy(candidate, out, positions, candidates, key, lastWriter);
+                    own.add(candidate);
+                }
+                for (Selector selector : rule.selectors) {
+                    if (!containsSelector(candidate.selectors, selector)) {
+                        candidate.selectors.add(selector);
+                    }
+                }
+                continue;
+            }
+            positions.put(rule, out.size());
+            out.add(rule);
+            candidates.put(key, rule);
+            for (ASTNode child : rule.body) {
+                lastWriter.put(property((Declaration) child), rule);
+            }
+        }
+        return out;
+    }
+
+    // Alleen de laatste declaratie per property blijft over, in de oorspronkelijke volgorde
+    private static Stylerule removeOverridden(Stylerule rule) {
+        if (!hasOverridden(rule.body)) {
+            return rule;
+        }
+        Set<String> seen = new HashSet<>();
+        ArrayList<ASTNode> kept = new ArrayList<>(rule.body.size());
+        for (int i = rule.body.size() - 1; i >= 0; i--) {
+            Declaration declaration = (Declaration) rule.body.get(i);
+            if (seen.add(property(declaration))) {
+                kept.add(declaration);
+            }
+        }
+        ArrayList<ASTNode> body = new ArrayList<>(kept.size());
+        for (int i = kept.size() - 1; i >= 0; i--) {
+            body.add(kept.get(i));
+        }
+        Stylerule result = new Stylerule();
+        result.selectors = new ArrayList<>(rule.selectors);
+        result.body = body;
+        return result;
+    }
+
+    // Een stylerule uit de invoer wordt niet aangepast: eerst een kopie met een eigen selectorlijst maken
+    private static Stylerule replaceWithCopy(Stylerule candidate, List<ASTNode> out, Map<Stylerule, Integer> positions,
+                                             Map<List<Object>, Stylerule> candidates, List<Object> key,
+                                             Map<String, Stylerule> lastWriter) {
+        Stylerule copy = new Stylerule();
+        copy.selectors = new ArrayList<>(candidate.selectors);
+        copy.body = candidate.body;
+        int position = positions.remove(candidate);
+        out.set(position, copy);
+        positions.put(copy, position);
+        candidates.put(key, copy);
+        for (ASTNode child : copy.body) {
+            lastWriter.put(property((Declaration) child), copy);
+        }
+        return copy;
+    }
+
+    // Bodies zijn klein: paarsgewijs vergelijken is goedkoper dan een set
+    private static boolean hasOverridden(List<ASTNode> body) {
+        for (int i = 1; i < body.size(); i++) {
+            String name = ((Declaration) body.get(i)).property.name;
+            for (int j = 0; j < i; j++) {
+                if (name.equalsIgnoreCase(((Declaration) body.get(j)).property.name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLastWriter(Stylerule candidate, List<ASTNode> body, Map<String, Stylerule> lastWriter) {
+        for (ASTNode child : body) {
+            if (lastWriter.get(property((Declaration) child)) != candidate) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean onlyDeclarations(Stylerule rule) {
+        for (ASTNode child : rule.body) {
+            if (!(child instanceof Declaration) || !(((Declaration) child).expression instanceof Literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsSelector(List<Selector> selectors, Selector selector) {
+        for (Selector existing : selectors) {
+            if (existing.equals(selector)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String property(Declaration declaration) {
+        return declaration.property.name.toLowerCase();
+    }
+
+    // Property-namen en literals om en om; literals vergelijken op type en waarde,
+    // dus twee bodies met dezelfde sleutel leveren exact dezelfde CSS op
+    private static List<Object> key(List<ASTNode> body) {
+        List<Object> key = new ArrayList<>(body.size() * 2);
+        for (ASTNode child : body) {
+            Declaration declaration = (Declaration) child;
+            key.add(declaration.property.name);
+            key.add(declaration.expression);
+        }
+        return key;
+    }
+}
@@ -4,4 +4,11 @@ import nl.han.ica.icss.ast.AST;
 
 public interface Transform {
     void apply(AST ast);
+
+    //Returns the transformed tree. Transforms that can leave their input untouched override this;
+    //the default applies the transform in place and returns the same AST
+    default AST transform(AST ast) {
+        apply(ast);
+        return ast;
+    }
 }
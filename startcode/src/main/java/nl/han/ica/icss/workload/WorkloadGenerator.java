@@ -0,0 +1,290 @@
+package nl.han.ica.icss.workload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Genereert synthetische, deterministische ICSS volgens ICSS.g4 voor schaaltests en benchmarks.
+ * - Dezelfde seed en instellingen geven altijd exact dezelfde tekst.
+ * - Elke vormdimensie heeft een eigen knop: aantal variabelen, stylerules, declaraties per rule,
+ *   diepte van geneste if/else, lengte van de rekenexpressies.
+ * - Met invalidRatio &gt; 0 krijgt een deel van de declaraties bewust een semantische fout
+ *   (verkeerd type of onbekende variabele); de tekst blijft wel syntactisch geldig.
+ *
+ * Voorbeeld: new WorkloadGenerator(42).stylerules(100_000).variables(5_000).generate()
+ */
+public class WorkloadGenerator {
+
+    // Inspringen stopt hier, anders groeit de tekst kwadratisch met de if-diepte
+    private static final int MAX_INDENT = 8;
+    private static final String[] TAGS = {"p", "a", "div", "span", "ul", "li", "h1", "nav"};
+
+    private final long seed;
+    private Random random;
+
+    private int variables = 20;
+    private int stylerules = 100;
+    private int declarationsPerRule = 4;
+    private int ifDepth = 2;
+    private int ifEvery = 10;
+    private int operationLength = 3;
+    private double invalidRatio = 0.0;
+
+    // Namen van de al gedefinieerde variabelen, per type
+    private final List<String> pixelVariables = new ArrayList<>();
+    private final List<String> percentageVariables = new ArrayList<>();
+    private final List<String> colorVariables = new ArrayList<>();
+    private final List<String> scalarVariables = new ArrayList<>();
+    private final List<String> boolVariables = new ArrayList<>();
+
+    public WorkloadGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public WorkloadGenerator variables(int variables) {
+        this.variables = variables;
+        return this;
+    }
+
+    public WorkloadGenerator stylerules(int stylerules) {
+        this.stylerules = stylerules;
+        return this;
+    }
+
+    public WorkloadGenerator declarationsPerRule(int declarationsPerRule) {
+        this.declarationsPerRule = declarationsPerRule;
+        return this;
+    }
+
+    /**
+     * Diepte van de geneste if/else-structuur in rules die een if krijgen (0 = geen if's).
+     */
+    public WorkloadGenerator ifDepth(int ifDepth) {
+        this.ifDepth = ifDepth;
+        return this;
+    }
+
+    /**
+     * Elke n-de stylerule krijgt een geneste if/else van ifDepth diep (0 = geen enkele).
+     */
+    public WorkloadGenerator ifEvery(int ifEvery) {
+        this.ifEvery = ifEvery;
+        return this;
+    }
+
+    /**
+     * Aantal termen in de expressies van width/height, bijv. 10_000 voor een lange AddOperation-keten.
+     */
+    public WorkloadGenerator operationLength(int operationLength) {
+        this.operationLength = Math.max(1, operationLength);
+        return this;
+    }
+
+    public WorkloadGenerator invalidRatio(double invalidRatio) {
+        this.invalidRatio = invalidRatio;
+        return this;
+    }
+
+    public String generate() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            generate(builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    public void generate(Appendable out) throws IOException {
+        random = new Random(seed);
+        pixelVariables.clear();
+        percentageVariables.clear();
+        colorVariables.clear();
+        scalarVariables.clear();
+        boolVariables.clear();
+
+        for (int i = 0; i < variables; i++) {
+            appendVariableAssignment(out, i);
+        }
+        out.append('\n');
+        for (int i = 0; i < stylerules; i++) {
+            appendStylerule(out, i);
+        }
+    }
+
+    private void appendVariableAssignment(Appendable out, int index) throws IOException {
+        String name;
+        String expression;
+        switch (index % 5) {
+            case 0:
+                name = "Width" + index;
+                expression = dimension("px", pixelVariables);
+                pixelVariables.add(name);
+                break;
+            case 1:
+                name = "Color" + index;
+                expression = color();
+                colorVariables.add(name);
+                break;
+            case 2:
+                name = "Use" + index;
+                expression = random.nextBoolean() ? "TRUE" : "FALSE";
+                boolVariables.add(name);
+                break;
+            case 3:
+                name = "Ratio" + index;
+                expression = dimension("%", percentageVariables);
+                percentageVariables.add(name);
+                break;
+            default:
+                name = "Factor" + index;
+                expression = Integer.toString(1 + random.nextInt(4));
+                scalarVariables.add(name);
+                break;
+        }
+        out.append(name).append(" := ").append(expression).append(";\n");
+    }
+
+    private void appendStylerule(Appendable out, int index) throws IOException {
+        out.append(selector(index)).append(" {\n");
+        for (int i = 0; i < declarationsPerRule; i++) {
+            appendDeclaration(out, 1);
+        }
+        if (ifEvery > 0 && ifDepth > 0 && index % ifEvery == 0) {
+            appendIfClause(out, 1, ifDepth);
+        }
+        out.append("}\n");
+    }
+
+    // Geneste if/else; de diepte wordt iteratief opgebouwd zodat ook 5000 niveaus geen stack kosten
+    private void appendIfClause(Appendable out, int indent, int depth) throws IOException {
+        for (int level = 0; level < depth; level++) {
+            indent(out, indent + level).append("if[").append(condition()).append("] {\n");
+            appendDeclaration(out, indent + level + 1);
+        }
+        for (int level = depth - 1; level >= 0; level--) {
+            indent(out, indent + level).append("} else {\n");
+            appendDeclaration(out, indent + level + 1);
+            indent(out, indent + level).append("}\n");
+        }
+    }
+
+    private void appendDeclaration(Appendable out, int indent) throws IOException {
+        indent(out, indent);
+        if (random.nextDouble() < invalidRatio) {
+            appendInvalidDeclaration(out);
+            return;
+        }
+        switch (random.nextInt(4)) {
+            case 0:
+                out.append("color: ").append(colorExpression());
+                break;
+            case 1:
+                out.append("background-color: ").append(colorExpression());
+                break;
+            case 2:
+                out.append("width: ").append(sizeExpression());
+                break;
+            default:
+                out.append("height: ").append(sizeExpression());
+                break;
+        }
+        out.append(";\n");
+    }
+
+    private void appendInvalidDeclaration(Appendable out) throws IOException {
+        switch (random.nextInt(3)) {
+            case 0:
+                out.append("width: ").append(color());
+                break;
+            case 1:
+                out.append("color: ").append(dimension("px", pixelVariables));
+                break;
+            default:
+                out.append("height: Undefined").append(Integer.toString(random.nextInt(1000)));
+                break;
+        }
+        out.append(";\n");
+    }
+
+    private String selector(int index) {
+        switch (index % 3) {
+            case 0:
+                return TAGS[random.nextInt(TAGS.length)];
+            case 1:
+                return ".class-" + index;
+            default:
+                return "#id-" + index;
+        }
+    }
+
+    private String condition() {
+        if (boolVariables.isEmpty()) {
+            return random.nextBoolean() ? "TRUE" : "FALSE";
+        }
+        return pick(boolVariables);
+    }
+
+    private String colorExpression() {
+        if (!colorVariables.isEmpty() && random.nextBoolean()) {
+            return pick(colorVariables);
+        }
+        return color();
+    }
+
+    private String sizeExpression() {
+        boolean pixels = percentageVariables.isEmpty() || random.nextInt(4) != 0;
+        String unit = pixels ? "px" : "%";
+        List<String> references = pixels ? pixelVariables : percentageVariables;
+
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < operationLength; i++) {
+            if (i > 0) {
+                expression.append(random.nextInt(3) == 0 ? " - " : " + ");
+            }
+            expression.append(term(unit, references));
+        }
+        return expression.toString();
+    }
+
+    // Eén term van een som: literal, variabele of scalar * literal
+    private String term(String unit, List<String> references) {
+        int choice = random.nextInt(4);
+        if (choice == 0 && !references.isEmpty()) {
+            return pick(references);
+        }
+        if (choice == 1) {
+            String factor = scalarVariables.isEmpty() || random.nextBoolean()
+                    ? Integer.toString(1 + random.nextInt(3))
+                    : pick(scalarVariables);
+            return factor + " * " + (1 + random.nextInt(20)) + unit;
+        }
+        return (1 + random.nextInt(100)) + unit;
+    }
+
+    // Een waarde van het gegeven type, bij voorkeur opgebouwd uit eerdere variabelen
+    private String dimension(String unit, List<String> references) {
+        if (!references.isEmpty() && random.nextBoolean()) {
+            return pick(references) + " + " + (1 + random.nextInt(50)) + unit;
+        }
+        return (1 + random.nextInt(500)) + unit;
+    }
+
+    private String color() {
+        return String.format("#%06x", random.nextInt(0x1000000));
+    }
+
+    private String pick(List<String> names) {
+        return names.get(random.nextInt(names.size()));
+    }
+
+    private Appendable indent(Appendable out, int indent) throws IOException {
+        for (int i = 0; i < Math.min(indent, MAX_INDENT); i++) {
+            out.append("  ");
+        }
+        return out;
+    }
+}
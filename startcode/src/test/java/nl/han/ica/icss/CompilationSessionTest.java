@@ -0,0 +1,96 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.VariableReference;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static nl.han.ica.icss.TestSupport.readTestFile;
+import static nl.han.ica.icss.TestSupport.compileSource;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilationSessionTest {
+
+	AST parsed(String source) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		assertTrue(pipeline.isParsed());
+		return pipeline.getAST();
+	}
+
+	@Test
+	void testEditOnlyRecompilesRulesThatUseTheVariable() throws IOException {
+		String source = readTestFile("level3.icss");
+		CompilationSession session = new CompilationSession(parsed(source));
+		assertEquals(compileSource(source), session.getCss());
+
+		List<Stylerule> recompiled = session.setVariable("ParWidth", new PixelLiteral(300));
+
+		// p en #menu gebruiken ParWidth, a en .menu niet
+		assertEquals(2, recompiled.size());
+		assertEquals(compileSource(source.replace("ParWidth := 500px;", "ParWidth := 300px;")), session.getCss());
+		assertTrue(session.getErrors().isEmpty());
+	}
+
+	@Test
+	void testEditPropagatesThroughOtherVariables() {
+		String source = "Other := 1px;\nBase := 10px;\nWide := Base + 5px;\n"
+				+ "p { width: Wide; }\na { width: Other; }\n";
+		CompilationSession session = new CompilationSession(parsed(source));
+		AddOperation sum = new AddOperation();
+		sum.addChild(new PixelLiteral(20));
+		sum.addChild(new VariableReference("Other"));
+
+		List<Stylerule> recompiled = session.setVariable("Base", sum);
+
+		// Alleen p, via Wide; a gebruikt Other maar hangt niet van Base af
+		assertEquals(1, recompiled.size());
+		assertEquals(compileSource(source.replace("Base := 10px;", "Base := 20px + Other;")), session.getCss());
+	}
+
+	@Test
+	void testTypeErrorAppearsAndDisappears() throws IOException {
+		String source = readTestFile("level3.icss");
+		CompilationSession session = new CompilationSession(parsed(source));
+
+		session.setVariable("ParWidth", new ColorLiteral("#ffffff"));
+		assertFalse(session.getErrors().isEmpty());
+
+		session.setVariable("ParWidth", new PixelLiteral(500));
+		assertTrue(session.getErrors().isEmpty());
+		assertEquals(compileSource(source), session.getCss());
+	}
+
+	@Test
+	void testFailedAssignmentKeepsEarlierBindingLikeFullCheck() {
+		String source = "X := 5px; X := #ff0000 + 1px; p { width: X; }";
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		assertFalse(pipeline.check());
+
+		CompilationSession session = new CompilationSession(parsed(source));
+
+		assertEquals(pipeline.getErrors(), session.getErrors().stream().map(Object::toString).collect(Collectors.toList()));
+		assertEquals("p {\n  width: 5px;\n}\n\n", session.getCss());
+	}
+
+	@Test
+	void testLargeSheetMatchesFullCompile() {
+		String source = new WorkloadGenerator(7).variables(50).stylerules(500).generate();
+		CompilationSession session = new CompilationSession(parsed(source));
+		assertEquals(compileSource(source), session.getCss());
+
+		List<Stylerule> recompiled = session.setVariable("Color1", new ColorLiteral("#123456"));
+
+		assertTrue(recompiled.size() < 500);
+		assertEquals(compileSource(source.replaceFirst("Color1 := #[0-9a-f]{6};", "Color1 := #123456;")), session.getCss());
+	}
+}
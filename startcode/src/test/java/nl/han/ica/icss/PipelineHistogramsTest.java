@@ -0,0 +1,46 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.workload.WorkloadGenerator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineHistogramsTest {
+
+	@Test
+	void testHistogramBucketsAndPercentiles() {
+		PipelineHistograms.Histogram histogram = new PipelineHistograms.Histogram();
+		for (int value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(5050, histogram.getSum());
+		assertEquals(1, histogram.getMin());
+		assertEquals(100, histogram.getMax());
+		// 50 valt in de bucket 32..63, 99 in 64..127 (begrensd door het maximum)
+		assertEquals(63, histogram.getPercentile(50));
+		assertEquals(100, histogram.getPercentile(99));
+		assertEquals(32, histogram.getBuckets()[6]);
+	}
+
+	@Test
+	void testRunsAreAggregated() {
+		PipelineHistograms histograms = new PipelineHistograms();
+		for (int run = 0; run < 3; run++) {
+			Pipeline pipeline = new Pipeline();
+			pipeline.setCollectStats(true);
+			pipeline.parseString(new WorkloadGenerator(run).stylerules(50).generate());
+			pipeline.check();
+			histograms.add(pipeline.getStats());
+		}
+
+		assertEquals(3, histograms.getRuns());
+		PipelineHistograms.Histogram check = histograms.getWallNanos(PipelineStats.Stage.CHECK);
+		assertEquals(3, check.getCount());
+		assertTrue(check.getMin() > 0);
+		assertTrue(check.getPercentile(50) <= check.getMax());
+		// Niet gelopen stappen tellen als 0
+		assertEquals(0, histograms.getWallNanos(PipelineStats.Stage.GENERATE).getMax());
+		assertTrue(histograms.getTokens().getMin() > 0);
+	}
+}
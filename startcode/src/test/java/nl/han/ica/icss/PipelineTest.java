@@ -0,0 +1,329 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.VariableAssignment;
+import nl.han.ica.icss.ast.VariableReference;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.transforms.Evaluator;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static nl.han.ica.icss.TestSupport.readTestFile;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineTest {
+
+	@Test
+	void testTwoStageParseGivesSameAST() throws IOException {
+		Pipeline twoStage = new Pipeline();
+		twoStage.parseString(readTestFile("level3.icss"));
+		Pipeline fullLL = new Pipeline();
+		fullLL.setTwoStageParsing(false);
+		fullLL.parseString(readTestFile("level3.icss"));
+
+		assertTrue(twoStage.isParsed());
+		assertEquals(Fixtures.uncheckedLevel3(), twoStage.getAST());
+		assertEquals(fullLL.getAST(), twoStage.getAST());
+	}
+
+	@Test
+	void testSyntaxErrorFallsBackToFullLL() {
+		String invalid = "p { width: 10px; ";
+		long fallbacks = Pipeline.getLlFallbackCount();
+
+		Pipeline twoStage = new Pipeline();
+		twoStage.parseString(invalid);
+		Pipeline fullLL = new Pipeline();
+		fullLL.setTwoStageParsing(false);
+		fullLL.parseString(invalid);
+
+		assertFalse(twoStage.isParsed());
+		assertEquals(fullLL.getErrors(), twoStage.getErrors());
+		assertTrue(Pipeline.getLlFallbackCount() > fallbacks);
+	}
+
+	@Test
+	void testListenerModeReportsSyntaxErrorsLikeParseTreeMode() {
+		for (String invalid : List.of("p { width: 1px + ; }", "W := 1px + ; p { width: W; }", "p { width: * 2px; }")) {
+			Pipeline listener = new Pipeline();
+			listener.setTwoStageParsing(false);
+			listener.parseString(invalid);
+			Pipeline tree = new Pipeline();
+			tree.setTwoStageParsing(false);
+			tree.setBuildParseTree(true);
+			tree.parseString(invalid);
+
+			assertFalse(listener.isParsed());
+			assertFalse(listener.getErrors().isEmpty());
+			assertTrue(listener.getErrors().get(0).startsWith("Syntax error: "), listener.getErrors().get(0));
+			assertEquals(tree.getErrors(), listener.getErrors());
+		}
+	}
+
+	@Test
+	void testParserIsReusableAfterAnAbortedParse() {
+		// Na error recovery in de listener moet de parser van deze thread gewoon de volgende invoer aankunnen
+		Pipeline aborted = new Pipeline();
+		aborted.setTwoStageParsing(false);
+		aborted.parseString("p { width: 1px + ; }");
+		assertEquals(List.of("Syntax error: mismatched input ';' expecting {TRUE, FALSE, PIXELSIZE, PERCENTAGE, SCALAR, COLOR, CAPITAL_IDENT}"),
+				aborted.getErrors());
+
+		Pipeline pipeline = new Pipeline();
+		pipeline.setTwoStageParsing(false);
+		pipeline.setBuildParseTree(true);
+		pipeline.parseString("p { width: 1px; ");
+		assertEquals(List.of("Syntax error: extraneous input '<EOF>' expecting {IF, LOWER_IDENT, '}'}"),
+				pipeline.getErrors());
+	}
+
+	@Test
+	void testParseWithoutParseTreeGivesSameAST() {
+		String source = new WorkloadGenerator(3).stylerules(300).ifDepth(4).operationLength(6).generate();
+		Pipeline streaming = new Pipeline();
+		streaming.parseString(source);
+		Pipeline withTree = new Pipeline();
+		withTree.setBuildParseTree(true);
+		withTree.parseString(source);
+
+		assertTrue(streaming.isParsed());
+		assertEquals(withTree.getAST(), streaming.getAST());
+	}
+
+	@Test
+	void testCheckBindsVariableReferencesToSlots() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(readTestFile("level3.icss"));
+		assertTrue(pipeline.check());
+
+		ASTNode sheet = pipeline.getAST().root;
+		for (int i = 0; i < sheet.getChildCount(); i++) {
+			if (sheet.getChild(i) instanceof VariableAssignment) {
+				VariableReference name = ((VariableAssignment) sheet.getChild(i)).name;
+				assertEquals(0, name.depth);
+				assertTrue(name.slot >= 0);
+			}
+		}
+		assertAllBound(sheet);
+	}
+
+	@Test
+	void testParallelCheckGivesSameErrorsInSameOrder() {
+		// Globale variabelen tussen de stylerules door, met een type dat halverwege verandert
+		StringBuilder source = new StringBuilder(new WorkloadGenerator(3).variables(40).stylerules(2_000).invalidRatio(0.05).generate());
+		source.append("W := 1px;\np { width: W; }\nW := #ff0000;\na { width: W; }\n");
+		for (int i = 0; i < 600; i++) {
+			source.append("V").append(i).append(" := ").append(i).append("px;\n.c").append(i)
+					.append(" { height: V").append(i).append(" + W; }\n");
+		}
+		Pipeline sequential = new Pipeline();
+		sequential.parseString(source.toString());
+		Pipeline parallel = new Pipeline();
+		parallel.setParallel(true);
+		parallel.parseString(source.toString());
+
+		assertFalse(sequential.check());
+		assertFalse(parallel.check());
+		assertEquals(sequential.getErrors(), parallel.getErrors());
+		assertEquals(sequential.getAST(), parallel.getAST());
+		assertAllBoundLike(sequential.getAST().root, parallel.getAST().root);
+	}
+
+	private void assertAllBoundLike(ASTNode expected, ASTNode actual) {
+		if (expected instanceof VariableReference) {
+			assertEquals(((VariableReference) expected).depth, ((VariableReference) actual).depth);
+			assertEquals(((VariableReference) expected).slot, ((VariableReference) actual).slot);
+			assertEquals(((VariableReference) expected).type, ((VariableReference) actual).type);
+		}
+		for (int i = 0; i < expected.getChildCount(); i++) {
+			assertAllBoundLike(expected.getChild(i), actual.getChild(i));
+		}
+	}
+
+	private void assertAllBound(ASTNode node) {
+		if (node instanceof VariableReference) {
+			assertTrue(((VariableReference) node).depth >= 0, node::getNodeLabel);
+		}
+		for (int i = 0; i < node.getChildCount(); i++) {
+			assertAllBound(node.getChild(i));
+		}
+	}
+
+	@Test
+	void testTransformLeavesCheckedTreeIntact() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(readTestFile("level3.icss"));
+		assertTrue(pipeline.check());
+
+		pipeline.transform();
+		AST first = pipeline.getAST();
+		String css = pipeline.generate();
+		pipeline.transform();
+
+		assertEquals(Fixtures.uncheckedLevel3(), pipeline.getSourceAST());
+		assertNotSame(first, pipeline.getAST());
+		assertEquals(first, pipeline.getAST());
+		assertEquals(css, pipeline.generate());
+	}
+
+	@Test
+	void testTransformSharesRulesWithoutVariables() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("a { color: #ff0000; } W := 10px; p { width: W; }");
+		assertTrue(pipeline.check());
+		pipeline.transform();
+
+		Stylerule literalsOnly = (Stylerule) pipeline.getSourceAST().root.body.get(0);
+		Stylerule withVariable = (Stylerule) pipeline.getSourceAST().root.body.get(2);
+		assertSame(literalsOnly, pipeline.getAST().root.body.get(0));
+		assertNotSame(withVariable, pipeline.getAST().root.body.get(1));
+		assertSame(withVariable.selectors, ((Stylerule) pipeline.getAST().root.body.get(1)).selectors);
+	}
+
+	@Test
+	void testDeeplyNestedIfsDoNotOverflowTheStack() {
+		StringBuilder source = new StringBuilder("B := TRUE;\np {\n");
+		for (int i = 0; i < 5000; i++) {
+			source.append("if [B] {\n");
+		}
+		source.append("width: 1px;\n");
+		for (int i = 0; i < 5000; i++) {
+			source.append("} else { height: 2px; }\n");
+		}
+		source.append("}\n");
+
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source.toString());
+		Pipeline again = new Pipeline();
+		again.parseString(source.toString());
+		assertEquals(again.getAST(), pipeline.getAST());
+		assertEquals(again.getAST().hashCode(), pipeline.getAST().hashCode());
+		assertEquals(again.getAST().toString(), pipeline.getAST().toString());
+
+		assertTrue(pipeline.check(), () -> String.join("\n", pipeline.getErrors()));
+		pipeline.transform();
+		assertEquals("p {\n  width: 1px;\n}\n\n", pipeline.generate());
+	}
+
+	@Test
+	void testDeepInputWithSyntaxErrorReportsItOnce() {
+		// De syntaxfout komt vóór de diepe nesting: de eerste poging meldt hem al voordat de stack overloopt
+		StringBuilder source = new StringBuilder("p { width 1px;\n");
+		for (int i = 0; i < 20000; i++) {
+			source.append("if [TRUE] {\n");
+		}
+		for (int i = 0; i < 20000; i++) {
+			source.append("}\n");
+		}
+		source.append("}\n");
+
+		Pipeline pipeline = new Pipeline();
+		pipeline.setCollectStats(true);
+		pipeline.parseString(source.toString());
+		assertEquals(List.of("Syntax error: missing ':' at '1px'"), pipeline.getErrors());
+		assertEquals(1, pipeline.getStats().getErrors());
+	}
+
+	@Test
+	void testLongOperationChainDoesNotOverflowTheStack() {
+		StringBuilder sum = new StringBuilder("1px");
+		for (int i = 1; i < 50000; i++) {
+			sum.append(i % 2 == 0 ? " + 2px" : " - 1px");
+		}
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("W := 1px;\np { width: W + " + sum + "; }");
+		assertTrue(pipeline.check(), () -> String.join("\n", pipeline.getErrors()));
+		pipeline.transform();
+		// W + 1px, dan 25000 keer - 1px en 24999 keer + 2px
+		assertEquals("p {\n  width: 25000px;\n}\n\n", pipeline.generate());
+
+		Evaluator compiling = new Evaluator();
+		compiling.setCompileExpressions(true);
+		assertEquals(pipeline.getAST(), compiling.transform(pipeline.getSourceAST()));
+
+		Pipeline invalid = new Pipeline();
+		invalid.parseString("p { width: " + sum + " + #ff0000; }");
+		assertFalse(invalid.check());
+		// De fout staat op de buitenste optelling (naast die van de declaratie, die geen type krijgt)
+		assertTrue(invalid.getErrors().stream().anyMatch(error -> error.contains("Kleur mag niet")));
+	}
+
+	@Test
+	void testStatsCoverEveryStage() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setCollectStats(true);
+		pipeline.parseString(readTestFile("level3.icss"));
+		assertEquals(Fixtures.uncheckedLevel3(), pipeline.getAST());
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		pipeline.generate();
+
+		PipelineStats stats = pipeline.getStats();
+		for (PipelineStats.Stage stage : PipelineStats.Stage.values()) {
+			// Standaard bouwt de parser de AST tijdens het parsen, zonder parse tree
+			if (stage != PipelineStats.Stage.BUILD_AST) {
+				assertTrue(stats.getWallNanos(stage) > 0, stage::toString);
+			}
+		}
+		assertEquals(0, stats.getWallNanos(PipelineStats.Stage.BUILD_AST));
+		assertEquals("SLL, AST tijdens het parsen", stats.getParsePath());
+		assertTrue(stats.getTokens() > 0);
+		assertEquals(4, stats.getVariables());
+		assertEquals(4, stats.getRules());
+		assertEquals(2, stats.getNodesByType().get("IfClause"));
+		assertEquals(0, stats.getErrors());
+
+		Pipeline withoutStats = new Pipeline();
+		withoutStats.parseString(readTestFile("level3.icss"));
+		assertNull(withoutStats.getStats());
+
+		Pipeline withParseTree = new Pipeline();
+		withParseTree.setCollectStats(true);
+		withParseTree.setBuildParseTree(true);
+		withParseTree.parseString(readTestFile("level3.icss"));
+		assertTrue(withParseTree.getStats().getWallNanos(PipelineStats.Stage.BUILD_AST) > 0);
+		assertEquals("SLL, parse tree", withParseTree.getStats().getParsePath());
+		assertEquals(stats.getTokens(), withParseTree.getStats().getTokens());
+	}
+
+	@Test
+	void testStatsArePublishedAsJfrEvents(@TempDir Path directory) throws IOException {
+		Path file = directory.resolve("pipeline.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("nl.han.ica.icss.PipelineStage");
+			recording.enable("nl.han.ica.icss.PipelineCounts");
+			recording.start();
+			Pipeline pipeline = new Pipeline();
+			pipeline.setCollectStats(true);
+			pipeline.parseString("W := 1px;\np { width: W + 2px; color: #ff0000 + 1px; }");
+			assertFalse(pipeline.check());
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		List<String> stages = events.stream()
+				.filter(event -> event.getEventType().getName().equals("nl.han.ica.icss.PipelineStage"))
+				.map(event -> event.getString("stage"))
+				.collect(Collectors.toList());
+		assertEquals(List.of("PARSE", "CHECK"), stages);
+		RecordedEvent counts = events.stream()
+				.filter(event -> event.getEventType().getName().equals("nl.han.ica.icss.PipelineCounts"))
+				.filter(event -> event.getString("stage").equals("CHECK"))
+				.findFirst().orElseThrow();
+		assertEquals(1, counts.getInt("rules"));
+		assertEquals("SLL, AST tijdens het parsen", counts.getString("parsePath"));
+		assertTrue(counts.getInt("errors") > 0);
+	}
+}
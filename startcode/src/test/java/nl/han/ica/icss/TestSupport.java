@@ -0,0 +1,38 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hulpmethodes voor tests die ICSS-bronnen door de gewone Pipeline halen.
+ * De handgebouwde AST's staan in parser.Fixtures.
+ */
+public class TestSupport {
+
+	public static String readTestFile(String resource) throws IOException {
+		InputStream inputStream = TestSupport.class.getClassLoader().getResourceAsStream(resource);
+		return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+	}
+
+	// Compileert de bron met de gewone Pipeline, als referentie
+	public static String compileSource(String source) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		assertTrue(pipeline.check(), () -> String.join("\n", pipeline.getErrors()));
+		pipeline.transform();
+		return pipeline.generate();
+	}
+
+	// Geparst en zonder fouten gecheckt
+	public static AST checked(String source) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		assertTrue(pipeline.check(), () -> String.join("\n", pipeline.getErrors()));
+		return pipeline.getAST();
+	}
+}
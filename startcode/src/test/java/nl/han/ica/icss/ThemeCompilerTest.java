@@ -0,0 +1,55 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static nl.han.ica.icss.TestSupport.readTestFile;
+import static nl.han.ica.icss.TestSupport.compileSource;
+import static nl.han.ica.icss.TestSupport.checked;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeCompilerTest {
+
+	@Test
+	void testThemesMatchEditedSources() throws IOException, InterruptedException {
+		String source = readTestFile("level3.icss");
+		ThemeCompiler themes = new ThemeCompiler(checked(source), 2);
+
+		PixelLiteral parWidth = new PixelLiteral(300);
+		List<String> css = themes.compileAll(List.of(
+				Map.of(),
+				Map.of("LinkColor", new ColorLiteral("#0000ff"), "UseLinkColor", new BoolLiteral(true)),
+				Map.of("ParWidth", parWidth)));
+
+		assertEquals(compileSource(source), css.get(0));
+		assertEquals(compileSource(source
+				.replace("LinkColor := #ff0000;", "LinkColor := #0000ff;")
+				.replace("UseLinkColor := FALSE;", "UseLinkColor := TRUE;")), css.get(1));
+		assertEquals(compileSource(source.replace("ParWidth := 500px;", "ParWidth := 300px;")), css.get(2));
+		// Controleren en toepassen laten de meegegeven literal ongemoeid
+		assertNull(parWidth.compiled);
+	}
+
+	@Test
+	void testOverrideWithWrongTypeIsRejected() throws IOException {
+		ThemeCompiler themes = new ThemeCompiler(checked(readTestFile("level3.icss")), 1);
+
+		assertThrows(IllegalArgumentException.class, () -> themes.compile(Map.of("ParWidth", new ColorLiteral("#ffffff"))));
+		assertThrows(IllegalArgumentException.class, () -> themes.compile(Map.of("Unknown", new PixelLiteral(1))));
+	}
+
+	@Test
+	void testOverrideOfGlobalWithMixedTypesIsRejected() {
+		ThemeCompiler themes = new ThemeCompiler(
+				checked("W := 1px; p { width: W + 2px; } W := #ff0000; a { color: W; }"), 1);
+
+		assertThrows(IllegalArgumentException.class, () -> themes.compile(Map.of("W", new ColorLiteral("#0000ff"))));
+		assertThrows(IllegalArgumentException.class, () -> themes.compile(Map.of("W", new PixelLiteral(5))));
+	}
+}
@@ -0,0 +1,47 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.operations.NaryOperation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckerTest {
+
+	List<String> checkErrors(String source) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		assertTrue(pipeline.isParsed(), () -> String.join("\n", pipeline.getErrors()));
+		assertFalse(pipeline.check());
+		return pipeline.getErrors();
+	}
+
+	@Test
+	void testMixedTypeChainReportsEveryOperator() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p { width: #ff0000 + 1px + 2px; }");
+		assertTrue(((Declaration) ((Stylerule) pipeline.getAST().root.body.get(0)).body.get(0)).expression
+				instanceof NaryOperation);
+
+		// Dezelfde meldingen als de binaire keten ((#ff0000 + 1px) + 2px): de buitenste operator eerst
+		assertEquals(List.of(
+				"ERROR: Property 'width' verwacht pixel of percentage, maar kreeg: onbekend",
+				"ERROR: Ongeldige operand(en) voor AddOperation",
+				"ERROR: Kleur mag niet gebruikt worden in + of -."),
+				checkErrors("p { width: #ff0000 + 1px + 2px; }"));
+		assertEquals(List.of(
+				"ERROR: Property 'width' verwacht pixel of percentage, maar kreeg: onbekend",
+				"ERROR: Ongeldige operand(en) voor SubtractOperation",
+				"ERROR: Ongeldige operand(en) voor AddOperation"),
+				checkErrors("p { width: 1px + X - 2px; }"));
+		assertEquals(List.of(
+				"ERROR: Property 'width' verwacht pixel of percentage, maar kreeg: onbekend",
+				"ERROR: Ongeldige operand(en) voor MultiplyOperation",
+				"ERROR: Ongeldige vermenigvuldiging: PIXEL * PIXEL"),
+				checkErrors("p { width: 1px * 2px * 3; }"));
+	}
+}
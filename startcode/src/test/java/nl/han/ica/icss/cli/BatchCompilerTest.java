@@ -0,0 +1,80 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCompilerTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testCompileAllWritesCssNextToSources() throws IOException, InterruptedException {
+		Path a = directory.resolve("a.icss");
+		Path b = directory.resolve("b.icss");
+		Files.writeString(a, "W := 5px; p { width: W + 1px; }", StandardCharsets.UTF_8);
+		Files.writeString(b, "a { color: #ff0000; }", StandardCharsets.UTF_8);
+
+		List<CompileResult> results = new BatchCompiler(2).compileAll(List.of(a, b));
+
+		assertEquals(List.of(a, b), List.of(results.get(0).source, results.get(1).source));
+		assertTrue(results.get(0).isSuccess());
+		assertTrue(results.get(1).isSuccess());
+		assertEquals("p {\n  width: 6px;\n}\n\n", Files.readString(directory.resolve("a.css")));
+		assertEquals("a {\n  color: #ff0000;\n}\n\n", Files.readString(directory.resolve("b.css")));
+		assertEquals(List.of("a.css", "a.icss", "b.css", "b.icss"), fileNames());
+	}
+
+	@Test
+	void testErrorsKeepPreviousOutput() throws IOException, InterruptedException {
+		Path source = directory.resolve("a.icss");
+		Files.writeString(source, "p { width: 10px; }", StandardCharsets.UTF_8);
+		BatchCompiler compiler = new BatchCompiler(1);
+		assertTrue(compiler.compile(source).isSuccess());
+		String previous = Files.readString(BatchCompiler.outputPath(source));
+
+		Files.writeString(source, "p { width: #ff0000; }", StandardCharsets.UTF_8);
+		Path missing = directory.resolve("missing.icss");
+		List<CompileResult> results = compiler.compileAll(List.of(source, missing));
+
+		assertFalse(results.get(0).isSuccess());
+		assertFalse(results.get(1).isSuccess());
+		assertTrue(results.get(1).errors.get(0).startsWith("I/O-fout: "));
+		assertEquals(previous, Files.readString(BatchCompiler.outputPath(source)));
+		assertEquals(List.of("a.css", "a.icss"), fileNames());
+	}
+
+	@Test
+	void testReportListsFailuresAndSummary() {
+		Path good = directory.resolve("good.icss");
+		Path bad = directory.resolve("bad.icss");
+		List<CompileResult> results = List.of(
+				new CompileResult(good, BatchCompiler.outputPath(good), List.of(), 2_000_000, true),
+				new CompileResult(bad, BatchCompiler.outputPath(bad), List.of("Syntax error: x"), 3_000_000));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		BatchCompiler.report(results, 4_000_000, 2, new PrintStream(bytes, true, StandardCharsets.UTF_8));
+
+		assertEquals(bad + ":\n  Syntax error: x\n"
+						+ "2 bestand(en) verwerkt, 1 gelukt, 1 mislukt, 1 uit cache in 4 ms (2 thread(s), 5 ms werk in totaal)\n",
+				bytes.toString(StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n"));
+	}
+
+	private List<String> fileNames() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilationCacheTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testPutThenGetGivesSameEntry() throws IOException {
+		CompilationCache cache = new CompilationCache(directory.resolve("cache"), 1024 * 1024, "");
+		String key = cache.key("p { width: 10px; }");
+		assertNull(cache.get(key));
+
+		cache.put(key, "p {\n  width: 10px;\n}\n\n", List.of("Fout één", "Fout twee"));
+
+		CompilationCache.Entry entry = cache.get(key);
+		assertEquals("p {\n  width: 10px;\n}\n\n", entry.css);
+		assertEquals(List.of("Fout één", "Fout twee"), entry.errors);
+		assertNotEquals(key, new CompilationCache(directory.resolve("cache"), 1024 * 1024, "minify").key("p { width: 10px; }"));
+	}
+
+	@Test
+	void testEvictRemovesLeastRecentlyUsed() throws IOException {
+		Path root = directory.resolve("cache");
+		CompilationCache cache = new CompilationCache(root, 1024 * 1024, "");
+		String css = "x".repeat(1000);
+		for (int i = 0; i < 3; i++) {
+			cache.put(cache.key("bron " + i), css, List.of());
+		}
+		// Entry 0 is het oudst maar wordt hieronder gebruikt; daarna is entry 1 het langst niet gebruikt
+		setAge(root, cache.key("bron 0"), 3000);
+		setAge(root, cache.key("bron 1"), 2000);
+		setAge(root, cache.key("bron 2"), 1000);
+		assertNotNull(cache.get(cache.key("bron 0")));
+
+		new CompilationCache(root, 2100, "").evict();
+
+		assertNotNull(cache.get(cache.key("bron 0")));
+		assertNull(cache.get(cache.key("bron 1")));
+		assertNotNull(cache.get(cache.key("bron 2")));
+	}
+
+	@Test
+	void testPutLeavesEvictionToEvictIfGrown() throws IOException {
+		Path root = directory.resolve("cache");
+		CompilationCache cache = new CompilationCache(root, 2100, "");
+		for (int i = 0; i < 3; i++) {
+			cache.put(cache.key("bron " + i), "x".repeat(1000), List.of());
+		}
+		assertNotNull(cache.get(cache.key("bron 0")));
+		setAge(root, cache.key("bron 0"), 3000);
+
+		cache.evictIfGrown();
+
+		assertNull(cache.get(cache.key("bron 0")));
+		assertNotNull(cache.get(cache.key("bron 1")));
+	}
+
+	@Test
+	void testToolVersionIsDerivedFromTheClasses() {
+		// Een digest over de klassen, niet het vaste versienummer uit de pom
+		assertTrue(CompilationCache.toolVersion().matches("[0-9a-f]{64}/[0-9]+"), CompilationCache.toolVersion());
+	}
+
+	@Test
+	void testSecondBatchRunComesFromCache() throws IOException, InterruptedException {
+		Path source = directory.resolve("a.icss");
+		Files.writeString(source, "W := 10px; p { width: W + 2px; }", StandardCharsets.UTF_8);
+		BatchCompiler compiler = new BatchCompiler(1);
+		compiler.setCache(new CompilationCache(directory.resolve("cache"), 1024 * 1024, ""));
+
+		CompileResult first = compiler.compileAll(List.of(source)).get(0);
+		String css = Files.readString(BatchCompiler.outputPath(source));
+		Files.delete(BatchCompiler.outputPath(source));
+		CompileResult second = compiler.compileAll(List.of(source)).get(0);
+
+		assertFalse(first.cached);
+		assertTrue(second.cached);
+		assertTrue(second.isSuccess());
+		assertEquals(css, Files.readString(BatchCompiler.outputPath(source)));
+	}
+
+	private static void setAge(Path root, String key, long millis) throws IOException {
+		Path entry = root.resolve(key.substring(0, 2)).resolve(key + ".entry");
+		Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis() - millis));
+	}
+}
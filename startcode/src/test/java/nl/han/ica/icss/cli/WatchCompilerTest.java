@@ -0,0 +1,86 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatchCompilerTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testOnlyChangedFileIsRecompiled() throws IOException, InterruptedException {
+		Path a = directory.resolve("a.icss");
+		Path b = directory.resolve("b.icss");
+		Files.writeString(a, "p { width: 10px; }", StandardCharsets.UTF_8);
+		Files.writeString(b, "a { width: 20px; }", StandardCharsets.UTF_8);
+
+		try (WatchCompiler watcher = new WatchCompiler(new BatchCompiler(1), List.of(directory), 50)) {
+			Files.writeString(a, "W := 5px; p { width: W + 1px; }", StandardCharsets.UTF_8);
+			List<CompileResult> results = pollUntil(watcher, 1);
+
+			assertEquals(1, results.size());
+			assertEquals(a, results.get(0).source);
+			assertTrue(results.get(0).isSuccess());
+			assertTrue(Files.readString(BatchCompiler.outputPath(a)).contains("width: 6px;"));
+			assertFalse(Files.exists(BatchCompiler.outputPath(b)));
+		}
+	}
+
+	@Test
+	void testFilesInNewDirectoryAreCompiled() throws IOException, InterruptedException {
+		try (WatchCompiler watcher = new WatchCompiler(new BatchCompiler(1), List.of(directory), 50)) {
+			Path nested = Files.createDirectories(directory.resolve("themes"));
+			Path source = nested.resolve("dark.icss");
+			Files.writeString(source, "p { color: #000000; }", StandardCharsets.UTF_8);
+			List<CompileResult> results = pollUntil(watcher, 1);
+
+			assertEquals(source, results.get(0).source);
+			assertTrue(Files.exists(BatchCompiler.outputPath(source)));
+		}
+	}
+
+	@Test
+	void testOnlyFilesFromTheArgumentsAreRecompiled() throws IOException, InterruptedException {
+		Path a = directory.resolve("a.icss");
+		Path theme = directory.resolve("theme-dark.icss");
+		Path other = directory.resolve("other.icss");
+		Files.writeString(a, "p { width: 10px; }", StandardCharsets.UTF_8);
+		Files.writeString(theme, "p { width: 10px; }", StandardCharsets.UTF_8);
+		Files.writeString(other, "p { width: 10px; }", StandardCharsets.UTF_8);
+		List<String> arguments = List.of(a.toString(), directory.resolve("theme-*.icss").toString());
+
+		try (WatchCompiler watcher = WatchCompiler.forArguments(new BatchCompiler(1), arguments, 50)) {
+			Files.writeString(other, "p { width: 20px; }", StandardCharsets.UTF_8);
+			Files.writeString(a, "p { width: 30px; }", StandardCharsets.UTF_8);
+			Files.writeString(theme, "p { width: 40px; }", StandardCharsets.UTF_8);
+			List<CompileResult> results = pollUntil(watcher, 2);
+			results.addAll(watcher.poll(200, TimeUnit.MILLISECONDS));
+
+			assertEquals(2, results.size());
+			assertTrue(Files.readString(BatchCompiler.outputPath(a)).contains("width: 30px;"));
+			assertTrue(Files.readString(BatchCompiler.outputPath(theme)).contains("width: 40px;"));
+			assertFalse(Files.exists(BatchCompiler.outputPath(other)));
+		}
+	}
+
+	// De WatchService kan meldingen over meerdere rondes verspreiden
+	private static List<CompileResult> pollUntil(WatchCompiler watcher, int count) throws IOException, InterruptedException {
+		List<CompileResult> results = new ArrayList<>();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+		while (results.size() < count && System.nanoTime() < deadline) {
+			results.addAll(watcher.poll(1, TimeUnit.SECONDS));
+		}
+		return results;
+	}
+}
@@ -0,0 +1,128 @@
+package nl.han.ica.icss.generator;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneratorTest {
+
+	@TempDir
+	Path directory;
+
+	static final String LEVEL3_CSS =
+			"p {\n" +
+			"  background-color: #ffffff;\n" +
+			"  width: 500px;\n" +
+			"  color: #124532;\n" +
+			"  background-color: #000000;\n" +
+			"  height: 20px;\n" +
+			"}\n\n" +
+			"a {\n" +
+			"  color: #ff0000;\n" +
+			"}\n\n" +
+			"#menu {\n" +
+			"  width: 520px;\n" +
+			"}\n\n" +
+			".menu {\n" +
+			"  color: #000000;\n" +
+			"  background-color: #ff0000;\n" +
+			"}\n\n";
+
+	AST transformTestFile(String resource) throws IOException {
+		InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource);
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+		assertTrue(pipeline.check(), () -> String.join("\n", pipeline.getErrors()));
+		pipeline.transform();
+		return pipeline.getAST();
+	}
+
+	@Test
+	void testGenerateLevel3() throws IOException {
+		AST ast = transformTestFile("level3.icss");
+		assertEquals(LEVEL3_CSS, new Generator().generate(ast));
+	}
+
+	@Test
+	void testUntransformedTreeSkipsVariables() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("W := 10px; p { width: 5px; }");
+		assertTrue(pipeline.check());
+		assertEquals("p {\n  width: 5px;\n}\n\n", pipeline.generate());
+		pipeline.setMinify(true);
+		assertEquals("p{width:5px}", pipeline.generate());
+	}
+
+	@Test
+	void testGenerateMinifiedLevel3() throws IOException {
+		Generator generator = new Generator();
+		generator.setMinify(true);
+		assertEquals("p{background-color:#fff;width:500px;color:#124532;background-color:#000;height:20px}"
+				+ "a{color:#f00}#menu{width:520px}.menu{color:#000;background-color:#f00}",
+				generator.generate(transformTestFile("level3.icss")));
+	}
+
+	@Test
+	void testMinifiedOutputLeavesOutEmptyRules() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setMinify(true);
+		pipeline.parseString("p { if[FALSE] { width: 10px; } } a { color: #123456; }");
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		assertEquals("a{color:#123456}", pipeline.generate());
+	}
+
+	@Test
+	void testGenerateToChannelIsSameAsString() throws IOException {
+		AST ast = transformTestFile("level3.icss");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new Generator().generate(ast, Channels.newChannel(bytes));
+		assertEquals(new Generator().generate(ast), bytes.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testParallelGenerationIsByteIdentical() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(new WorkloadGenerator(3).variables(20).stylerules(3000).generate());
+		assertTrue(pipeline.check(), () -> String.join("\n", pipeline.getErrors()));
+		pipeline.transform();
+		AST ast = pipeline.getAST();
+
+		for (boolean minify : new boolean[]{false, true}) {
+			Generator sequential = new Generator();
+			sequential.setMinify(minify);
+			String expected = sequential.generate(ast);
+			Generator parallel = new Generator();
+			parallel.setMinify(minify);
+			parallel.setParallel(true);
+
+			assertEquals(expected, parallel.generate(ast));
+			StringBuilder appended = new StringBuilder();
+			parallel.generate(ast, appended);
+			assertEquals(expected, appended.toString());
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			parallel.generate(ast, Channels.newChannel(bytes));
+			assertEquals(expected, bytes.toString(StandardCharsets.UTF_8));
+			// FileChannel is een GatheringByteChannel
+			Path file = directory.resolve(minify ? "min.css" : "out.css");
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				parallel.generate(ast, channel);
+			}
+			assertEquals(expected, Files.readString(file));
+		}
+	}
+}
@@ -3,7 +3,11 @@ package nl.han.ica.icss.parser;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import nl.han.ica.icss.Pipeline;
 import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.NaryOperation;
 
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.misc.*;
@@ -81,4 +85,51 @@ class ParserTest {
 		AST exp = Fixtures.uncheckedLevel3();
 		assertEquals(exp,sut);
 	}
+
+	@Test
+	void testLongChainsAreFlattened() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p { width: 1px + W * 2 * 3 - 4px; height: 1px + 2px; }");
+		Stylerule rule = (Stylerule) pipeline.getAST().root.body.get(0);
+
+		NaryOperation sum = (NaryOperation) ((Declaration) rule.body.get(0)).expression;
+		assertEquals(3, sum.size());
+		assertEquals(new PixelLiteral(1), sum.getOperand(0));
+		assertEquals(NaryOperation.Operator.PLUS, sum.getOperator(1));
+		assertEquals(NaryOperation.Operator.MIN, sum.getOperator(2));
+		assertEquals(new PixelLiteral(4), sum.getOperand(2));
+		NaryOperation product = (NaryOperation) sum.getOperand(1);
+		assertTrue(product.isProduct());
+		assertEquals(3, product.size());
+		assertEquals(new VariableReference("W"), product.getOperand(0));
+		// Twee termen blijven een binaire operatie
+		assertTrue(((Declaration) rule.body.get(1)).expression instanceof AddOperation);
+	}
+
+	@Test
+	void testMalformedInputReportsSyntaxErrors() {
+		String[] inputs = {
+				"p { color: #FFFFFF; }",
+				"p { width: ; }",
+				"W := ; p { width: 1px; }",
+				"p { if [ ] { width: 1px; } }",
+				"p { width 1px; }"
+		};
+		for (String input : inputs) {
+			// Standaardinstellingen: SLL zonder parse tree, bij een fout LL met error recovery
+			Pipeline pipeline = new Pipeline();
+			pipeline.parseString(input);
+			Pipeline withTree = new Pipeline();
+			withTree.setTwoStageParsing(false);
+			withTree.setBuildParseTree(true);
+			withTree.parseString(input);
+
+			assertFalse(pipeline.isParsed(), input);
+			assertTrue(pipeline.getErrors().get(0).startsWith("Syntax error: "), input);
+			assertEquals(withTree.getErrors(), pipeline.getErrors(), input);
+		}
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p { color: #FFFFFF; }");
+		assertEquals("Syntax error: token recognition error at: '#F'", pipeline.getErrors().get(0));
+	}
 }
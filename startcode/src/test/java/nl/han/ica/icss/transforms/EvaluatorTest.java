@@ -0,0 +1,94 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.VariableAssignment;
+import nl.han.ica.icss.ast.literals.PercentageLiteral;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+import org.junit.jupiter.api.Test;
+
+import static nl.han.ica.icss.TestSupport.checked;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluatorTest {
+
+	@Test
+	void testCompiledExpressionsGiveSameResultAsInterpreter() {
+		String source = new WorkloadGenerator(11).variables(40).stylerules(200).ifDepth(3).operationLength(8).generate();
+		AST compiled = checked(source);
+		AST interpreted = checked(source);
+
+		Evaluator compiler = new Evaluator();
+		compiler.setCompileExpressions(true);
+		compiler.apply(compiled);
+		new Evaluator().apply(interpreted);
+
+		assertEquals(interpreted, compiled);
+	}
+
+	@Test
+	void testCompiledExpressionsFollowARecheck() {
+		AST ast = checked("W := 1px; p { width: W * 2; }");
+		Evaluator compiler = new Evaluator();
+		compiler.setCompileExpressions(true);
+		assertEquals("p {\n  width: 2px;\n}\n\n", new Generator().generate(compiler.transform(ast)));
+
+		((VariableAssignment) ast.root.getChild(0)).expression = new PercentageLiteral(50);
+		new Checker().check(ast);
+		assertTrue(ast.getErrors().isEmpty());
+		assertEquals("p {\n  width: 100%;\n}\n\n", new Generator().generate(compiler.transform(ast)));
+	}
+
+	@Test
+	void testParallelEvaluationGivesSameCssInSourceOrder() {
+		// Globale variabelen tussen de stylerules door, zodat elke stylerule zijn eigen waardes moet zien
+		StringBuilder source = new StringBuilder(new WorkloadGenerator(5).variables(40).stylerules(2_000).ifDepth(3).generate());
+		for (int i = 0; i < 600; i++) {
+			source.append("W := ").append(i).append("px;\n.c").append(i).append(" { width: W * 2; }\n");
+		}
+		AST ast = checked(source.toString());
+		Evaluator parallel = new Evaluator();
+		parallel.setParallel(true);
+
+		String expected = new Generator().generate(new Evaluator().transform(ast));
+		assertEquals(expected, new Generator().generate(parallel.transform(ast)));
+		parallel.setCompileExpressions(true);
+		assertEquals(expected, new Generator().generate(parallel.transform(ast)));
+	}
+
+	@Test
+	void testFlatChainsEvaluateLeftToRight() {
+		AST ast = checked("W := 3px;\np { width: W * 2 + 10px - 4px * 2 * 1 + W; height: 2 * 3 * 4 * 5px; }");
+		assertEquals("p {\n  width: 11px;\n  height: 120px;\n}\n\n", new Generator().generate(new Evaluator().transform(ast)));
+	}
+
+	@Test
+	void testTenThousandTermChain() {
+		StringBuilder sum = new StringBuilder("W");
+		for (int i = 1; i < 10_000; i++) {
+			sum.append(i % 3 == 0 ? " - 2px" : " + 1px * 2");
+		}
+		AST ast = checked("W := 5px;\np { width: " + sum + "; }");
+		// 3333 keer - 2px en 6666 keer + 2px
+		String expected = "p {\n  width: " + (5 + 6666 * 2 - 3333 * 2) + "px;\n}\n\n";
+		assertEquals(expected, new Generator().generate(new Evaluator().transform(ast)));
+		Evaluator compiler = new Evaluator();
+		compiler.setCompileExpressions(true);
+		assertEquals(expected, new Generator().generate(compiler.transform(ast)));
+	}
+
+	@Test
+	void testUncheckedAstIsRejected() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("W := 10px; p { width: W; }");
+		AST unchecked = pipeline.getAST();
+		assertThrows(IllegalStateException.class, () -> new Evaluator().transform(unchecked));
+
+		// Na check met fouten zijn de onbekende variabelen al gemeld; uitrekenen mag dan niet crashen
+		pipeline.parseString("p { width: X + 1px; }");
+		assertFalse(pipeline.check());
+		assertDoesNotThrow(() -> new Evaluator().transform(pipeline.getAST()));
+	}
+}
@@ -0,0 +1,53 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.Stylerule;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizerTest {
+
+	String compile(String source, boolean optimize) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setOptimize(optimize);
+		pipeline.setMinify(true);
+		pipeline.parseString(source);
+		assertTrue(pipeline.check(), () -> String.join("\n", pipeline.getErrors()));
+		pipeline.transform();
+		return pipeline.generate();
+	}
+
+	@Test
+	void testOverriddenDeclarationsAreRemoved() {
+		String source = "p { background-color: #ffffff; width: 10px; if[TRUE] { background-color: #000000; } }";
+		assertEquals("p{width:10px;background-color:#000}", compile(source, true));
+	}
+
+	@Test
+	void testRulesWithSameBodyAreMerged() {
+		String source = "p { color: #ff0000; } a { width: 10px; } .x { color: #ff0000; }";
+		assertEquals("p,.x{color:#f00}a{width:10px}", compile(source, true));
+	}
+
+	@Test
+	void testRulesAreNotMergedAcrossRuleWithSameProperty() {
+		// .x moet na a blijven komen: een element dat zowel a als .x is, moet rood blijven
+		String source = "p { color: #ff0000; } a { color: #0000ff; } .x { color: #ff0000; }";
+		assertEquals(compile(source, false), compile(source, true));
+	}
+
+	@Test
+	void testTransformLeavesInputIntact() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p { color: #ff0000; color: #00ff00; } a { color: #00ff00; }");
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		String before = pipeline.getAST().toString();
+
+		new Optimizer().transform(pipeline.getAST());
+
+		assertEquals(before, pipeline.getAST().toString());
+		assertEquals(2, ((Stylerule) pipeline.getAST().root.body.get(0)).body.size());
+	}
+}
@@ -0,0 +1,46 @@
+package nl.han.ica.icss.workload;
+
+import nl.han.ica.icss.Pipeline;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkloadGeneratorTest {
+
+	Pipeline parseAndCheck(String source) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		assertTrue(pipeline.isParsed(), () -> String.join("\n", pipeline.getErrors()));
+		pipeline.check();
+		return pipeline;
+	}
+
+	@Test
+	void testSameSeedGivesSameOutput() {
+		WorkloadGenerator generator = new WorkloadGenerator(7).stylerules(50);
+		assertEquals(generator.generate(), generator.generate());
+		assertEquals(generator.generate(), new WorkloadGenerator(7).stylerules(50).generate());
+		assertNotEquals(generator.generate(), new WorkloadGenerator(8).stylerules(50).generate());
+	}
+
+	@Test
+	void testValidWorkloadChecksWithoutErrors() {
+		String source = new WorkloadGenerator(42)
+				.variables(100)
+				.stylerules(200)
+				.ifDepth(5)
+				.ifEvery(3)
+				.operationLength(20)
+				.generate();
+		Pipeline pipeline = parseAndCheck(source);
+		assertTrue(pipeline.isChecked(), () -> String.join("\n", pipeline.getErrors()));
+	}
+
+	@Test
+	void testInvalidWorkloadHasSemanticErrors() {
+		String source = new WorkloadGenerator(42).stylerules(100).invalidRatio(0.2).generate();
+		Pipeline pipeline = parseAndCheck(source);
+		assertFalse(pipeline.isChecked());
+		assertFalse(pipeline.getErrors().isEmpty());
+	}
+}